@@ -0,0 +1,71 @@
+package tactician;
+
+import java.util.function.Consumer;
+
+/**
+ * This class runs a fixed benchmark: it searches a fixed list of positions to a fixed depth and
+ * reports the total number of nodes, the time taken, and the speed in nodes per second. It is run
+ * with the command line argument {@code bench}, or with the UCI command {@code bench} which is an
+ * extension to the protocol; see {@link Tactician}.
+ *
+ * <p>The speed gives a single number to compare builds on the same machine. The node count does
+ * not depend on the machine at all: each search starts from a cleared state (see
+ * {@link Brain#clear()}), so as long as the search and the evaluation are unchanged the count is
+ * the same on every run and every machine. A change in the count means that the behavior of the
+ * engine changed, which makes it a cheap functional fingerprint of a build, for example to verify
+ * a deployment or to check that a change meant only as an optimization did not change the search.
+ *
+ * @author Phil Leszczynski
+ */
+public class Bench {
+  /**
+   * Searches each of the benchmark positions and reports the node count for each one, followed by
+   * the totals. The board's evaluation settings, such as its neural network and piece-square
+   * tables, are kept; only its position is replaced.
+   *
+   * @param brain the brain to search with, which is cleared before each position
+   * @param board a board with the evaluation settings to benchmark, which is left unchanged
+   * @param depth the search depth in plies
+   * @param output where to send each line of the report
+   * @return the total number of nodes searched
+   */
+  public static long run(Brain brain, Board board, int depth, Consumer<String> output) {
+    long nodes = 0;
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < FENSTRINGS.length; i++) {
+      Board copy = new Board(board);
+      copy.setPositionFenstring(FENSTRINGS[i]);
+      brain.clear();
+      Move move = brain.getMove(copy, depth);
+      nodes += brain.getNodes();
+      output.accept("Position " + (i + 1) + "/" + FENSTRINGS.length + ": bestmove " + move
+          + " nodes " + brain.getNodes());
+    }
+    long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+    output.accept("");
+    output.accept("Total time (ms) : " + elapsed);
+    output.accept("Nodes searched  : " + nodes);
+    output.accept("Nodes/second    : " + nodes * 1000 / elapsed);
+    return nodes;
+  }
+
+  /** The default search depth in plies. */
+  public static int DEPTH = 5;
+
+  /**
+   * The benchmark positions in FEN notation: the opening, the perft positions from
+   * {@link tactician.Test.TestPerformance}, and a few typical middlegames and endgames. Changing
+   * this list changes the node count fingerprint.
+   */
+  public static String[] FENSTRINGS = {
+      "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+      "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+      "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+      "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+      "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+      "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+      "r2q1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP2BPPP/R2QK2R w KQ - 0 9",
+      "8/5pk1/6p1/8/3R4/6P1/5PK1/2r5 w - - 0 40",
+      "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 50"};
+}
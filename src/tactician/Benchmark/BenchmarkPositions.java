@@ -0,0 +1,51 @@
+package tactician.Benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class holds the positions that the benchmarks run on. They are the same positions that
+ * {@link tactician.Test.TestPerformance} checks the move generator with: the initial position,
+ * "Kiwi Pete", and Positions 3 through 6, which between them cover castling, en passant,
+ * promotions, checks, and both quiet and tactical middlegames. Each benchmark takes the name of a
+ * position as a JMH parameter so that the results are reported per position.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Perft+Results">Perft Results</a>
+ * @author Phil Leszczynski
+ */
+public class BenchmarkPositions {
+  /**
+   * Returns the FEN string of a benchmark position.
+   *
+   * @param name the name of the position, one of {@link #NAMES}
+   * @return the position in FEN notation
+   */
+  public static String fenstring(String name) {
+    String fenstring = fenstrings.get(name);
+    if (fenstring == null) {
+      throw new IllegalArgumentException("Unknown benchmark position: " + name);
+    }
+    return fenstring;
+  }
+
+  /**
+   * The names of the benchmark positions. JMH parameters must be compile-time constants, so the
+   * benchmarks repeat these in their {@code @Param} annotations.
+   */
+  public static String[] NAMES =
+      {"initial", "kiwipete", "position3", "position4", "position5", "position6"};
+
+  private static Map<String, String> fenstrings = new HashMap<String, String>();
+
+  static {
+    fenstrings.put("initial", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+    fenstrings.put("kiwipete",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    fenstrings.put("position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+    fenstrings.put("position4",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+    fenstrings.put("position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8");
+    fenstrings.put("position6",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+  }
+}
@@ -0,0 +1,75 @@
+package tactician.Benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tactician.Board;
+import tactician.Move;
+
+/**
+ * This class benchmarks copying boards and making moves. The search is copy-make, so every node
+ * costs one {@link Board#Board(Board)} and one {@link Board#move(Move)}. Each call to
+ * {@link #copyMove()} makes the next of the position's legal moves in turn, so that all of the
+ * move types in the position (captures, castling, promotions, and so on) are covered. See
+ * {@link BenchmarkPositions} for the positions.
+ *
+ * @author Phil Leszczynski
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+  /** Sets up the board and its legal moves for the position being benchmarked. */
+  @Setup
+  public void setup() {
+    this.board = new Board(BenchmarkPositions.fenstring(this.position));
+    this.moves = this.board.legalMoves();
+  }
+
+  /**
+   * Copies the board.
+   *
+   * @return the copy, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public Board copy() {
+    return new Board(this.board);
+  }
+
+  /**
+   * Copies the board and makes the next legal move on the copy.
+   *
+   * @return the copy after the move, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public Board copyMove() {
+    Move move = this.moves.get(this.nextMove);
+    this.nextMove = (this.nextMove + 1) % this.moves.size();
+    Board copy = new Board(this.board);
+    copy.move(move);
+    return copy;
+  }
+
+  /** The name of the position being benchmarked, see {@link BenchmarkPositions}. */
+  @Param({"initial", "kiwipete", "position3", "position4", "position5", "position6"})
+  public String position;
+
+  private Board board;
+  private ArrayList<Move> moves;
+  private int nextMove = 0;
+}
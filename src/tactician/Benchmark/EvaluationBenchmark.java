@@ -0,0 +1,84 @@
+package tactician.Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tactician.Board;
+import tactician.Evaluation;
+
+/**
+ * This class benchmarks the static evaluation. Since {@link Evaluation#fitness(Board)} memoizes
+ * its scores, evaluating the same board over and over would only measure a cache probe. So
+ * {@link #fitness()} gives the board a new position hash before each call, forcing the full
+ * evaluation, while {@link #fitnessCached()} measures the probe on its own. The pawn/king hash
+ * table is keyed separately and stays warm, as it mostly does in a real search. See
+ * {@link BenchmarkPositions} for the positions.
+ *
+ * @author Phil Leszczynski
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+  /** Sets up the board and the evaluation for the position being benchmarked. */
+  @Setup
+  public void setup() {
+    this.board = new Board(BenchmarkPositions.fenstring(this.position));
+    this.evaluation = new Evaluation();
+  }
+
+  /**
+   * Computes the full static evaluation, missing the evaluation hash table.
+   *
+   * @return the evaluation, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public int fitness() {
+    // The evaluation hash table stores the full position hash, and adding an odd constant never
+    // returns to an earlier hash within a run, so every lookup misses. The board itself is left
+    // unchanged, so each call evaluates the same position.
+    this.board.positionHash += 0x9e3779b97f4a7c15L;
+    return this.evaluation.fitness(this.board);
+  }
+
+  /**
+   * Looks up the static evaluation of a position already in the evaluation hash table.
+   *
+   * @return the evaluation, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public int fitnessCached() {
+    return this.evaluation.fitness(this.board);
+  }
+
+  /**
+   * Computes the quick estimate used by lazy evaluation.
+   *
+   * @return the estimate, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public int fitnessQuick() {
+    return this.evaluation.fitnessQuick(this.board);
+  }
+
+  /** The name of the position being benchmarked, see {@link BenchmarkPositions}. */
+  @Param({"initial", "kiwipete", "position3", "position4", "position5", "position6"})
+  public String position;
+
+  private Board board;
+  private Evaluation evaluation;
+}
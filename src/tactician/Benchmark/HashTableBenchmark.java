@@ -0,0 +1,123 @@
+package tactician.Benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tactician.Board;
+import tactician.Move;
+import tactician.PawnKingHashTable;
+import tactician.TranspositionTable;
+import tactician.TranspositionTable.TranspositionEntry;
+import tactician.TranspositionTable.TranspositionType;
+
+/**
+ * This class benchmarks the hash tables used by the search: stores and probes in the
+ * {@link TranspositionTable}, and hits and misses in the {@link PawnKingHashTable}.
+ *
+ * <p>The transposition table is as large as the one the engine uses, and is accessed at random
+ * position hashes drawn from a fixed seed, so that the cache misses of a real search are part of
+ * the measurement. The pawn/king hash table is probed with the position's own pawns and kings; a
+ * miss is forced by changing the pawn/king hash, which measures the pawn structure and king
+ * shelter computation. See {@link BenchmarkPositions} for the positions.
+ *
+ * @author Phil Leszczynski
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Thread)
+public class HashTableBenchmark {
+  /** Sets up the tables, the random position hashes, and the board being benchmarked. */
+  @Setup
+  public void setup() {
+    this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+    this.pawnKingHashTable = new PawnKingHashTable(PAWN_KING_TABLE_SIZE);
+    this.board = new Board(BenchmarkPositions.fenstring(this.position));
+    ArrayList<Move> moves = this.board.legalMoves();
+    this.move = moves.get(0);
+
+    Random random = new Random(SEED);
+    this.positionHashes = new long[NUM_POSITION_HASHES];
+    for (int i = 0; i < NUM_POSITION_HASHES; i++) {
+      this.positionHashes[i] = random.nextLong();
+      this.transpositionTable.put(5, this.positionHashes[i], i, this.move,
+          TranspositionType.NODE_PV);
+    }
+  }
+
+  /** Stores an entry in the transposition table at the next random position hash. */
+  @Benchmark
+  public void transpositionTablePut() {
+    long positionHash = this.positionHashes[this.nextPositionHash];
+    this.nextPositionHash = (this.nextPositionHash + 1) % NUM_POSITION_HASHES;
+    this.transpositionTable.put(5, positionHash, 100, this.move, TranspositionType.NODE_CUT);
+  }
+
+  /**
+   * Probes the transposition table at the next random position hash.
+   *
+   * @return the entry found, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public TranspositionEntry transpositionTableGet() {
+    long positionHash = this.positionHashes[this.nextPositionHash];
+    this.nextPositionHash = (this.nextPositionHash + 1) % NUM_POSITION_HASHES;
+    return this.transpositionTable.get(positionHash);
+  }
+
+  /**
+   * Probes the pawn/king hash table for a position that is already stored.
+   *
+   * @return the packed entry, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public long pawnKingProbeHit() {
+    return this.pawnKingHashTable.probe(this.board);
+  }
+
+  /**
+   * Probes the pawn/king hash table for a position that is not stored, computing its entry.
+   *
+   * @return the packed entry, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public long pawnKingProbeMiss() {
+    // The table stores the full pawn/king hash, and adding an odd constant never returns to an
+    // earlier hash within a run, so every probe misses and computes the entry from the board.
+    this.board.positionHashPawnsKings += 0x9e3779b97f4a7c15L;
+    return this.pawnKingHashTable.probe(this.board);
+  }
+
+  /** The name of the position being benchmarked, see {@link BenchmarkPositions}. */
+  @Param({"initial", "kiwipete", "position3", "position4", "position5", "position6"})
+  public String position;
+
+  /** The number of entries in the transposition table, as in {@link tactician.Brain}. */
+  private static int TRANSPOSITION_TABLE_SIZE = 32 * 1024 * 1024;
+
+  private static int PAWN_KING_TABLE_SIZE = 64 * 1024;
+  private static int NUM_POSITION_HASHES = 64 * 1024;
+  private static long SEED = 1;
+
+  private TranspositionTable transpositionTable;
+  private PawnKingHashTable pawnKingHashTable;
+  private Board board;
+  private Move move;
+  private long[] positionHashes;
+  private int nextPositionHash = 0;
+}
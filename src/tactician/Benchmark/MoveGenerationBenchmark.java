@@ -0,0 +1,76 @@
+package tactician.Benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tactician.Board;
+import tactician.Move;
+
+/**
+ * This class benchmarks move generation: the pseudo-legal generators used by the search and the
+ * fully legal generator used at the root and by perft. See {@link BenchmarkPositions} for the
+ * positions.
+ *
+ * @author Phil Leszczynski
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGenerationBenchmark {
+  /** Sets up the board for the position being benchmarked. */
+  @Setup
+  public void setup() {
+    this.board = new Board(BenchmarkPositions.fenstring(this.position));
+  }
+
+  /**
+   * Generates all pseudo-legal moves.
+   *
+   * @return the moves, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public ArrayList<Move> legalMovesFast() {
+    return this.board.legalMovesFast(false);
+  }
+
+  /**
+   * Generates the pseudo-legal captures only, as in the quiescent search.
+   *
+   * @return the moves, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public ArrayList<Move> legalMovesFastCaptures() {
+    return this.board.legalMovesFast(true);
+  }
+
+  /**
+   * Generates all legal moves, which also checks that each move does not leave the king in check.
+   *
+   * @return the moves, returned so that JMH does not eliminate the call
+   */
+  @Benchmark
+  public ArrayList<Move> legalMoves() {
+    return this.board.legalMoves();
+  }
+
+  /** The name of the position being benchmarked, see {@link BenchmarkPositions}. */
+  @Param({"initial", "kiwipete", "position3", "position4", "position5", "position6"})
+  public String position;
+
+  private Board board;
+}
@@ -50,9 +50,7 @@ public class Bitboard {
    * @return a bitboard with squares in the rank occupied
    */
   public static Bitboard bitboardFromRank(int rank) {
-    long zerothRankMask = 0x00000000000000ffL;
-    long rankMask = zerothRankMask << (8 * rank);
-    return new Bitboard(rankMask);
+    return new Bitboard(rankMasks[rank]);
   }
 
   /**
@@ -63,9 +61,7 @@ public class Bitboard {
    * @return a bitboard with squares in the file occupied
    */
   public static Bitboard bitboardFromFile(int file) {
-    long zerothFileMask = 0x0101010101010101L;
-    long fileMask = zerothFileMask << file;
-    return new Bitboard(fileMask);
+    return new Bitboard(fileMasks[file]);
   }
 
   /**
@@ -286,4 +282,36 @@ public class Bitboard {
    * description of the long representation.
    */
   private long data = 0;
+
+  /**
+   * The 64-bit long masks for each rank, 0-7, with 0 being the rank closest to the white player.
+   * Code that runs at every search node should use these rather than
+   * {@link #bitboardFromRank(int)}, which allocates a new bitboard.
+   */
+  public static long[] rankMasks = new long[8];
+
+  /**
+   * The 64-bit long masks for each file, 0-7, with 0 being the left file from white's
+   * perspective. Code that runs at every search node should use these rather than
+   * {@link #bitboardFromFile(int)}, which allocates a new bitboard.
+   */
+  public static long[] fileMasks = new long[8];
+
+  /** The 64-bit long masks of the files on either side of each file, 0-7. */
+  public static long[] adjacentFileMasks = new long[8];
+
+  static {
+    for (int i = 0; i < 8; i++) {
+      rankMasks[i] = 0x00000000000000ffL << (8 * i);
+      fileMasks[i] = 0x0101010101010101L << i;
+    }
+    for (int i = 0; i < 8; i++) {
+      if (i > 0) {
+        adjacentFileMasks[i] |= fileMasks[i - 1];
+      }
+      if (i < 7) {
+        adjacentFileMasks[i] |= fileMasks[i + 1];
+      }
+    }
+  }
 }
@@ -15,8 +15,10 @@ import java.util.Map;
  * includes the summary bitboards {@link #playerBitboards} and {@link #allPieces} which track the
  * occupied pieces for white/black and for both players, respectively. Also when a move is made the
  * position hashes {@link #positionHash} and {@link #positionHashPawnsKings} must be updated for
- * the transposition table memoization to work. We need to update {@link #castleRights},
- * {@link #enPassantTarget}, and {@link #fullMoveCounter} as well as necessary.
+ * the transposition table memoization to work. The piece-square sums {@link #pieceSquareMidgame}
+ * and {@link #pieceSquareEndgame} and the game {@link #phase} must be updated whenever a piece is
+ * added, removed, or moved. We need to update {@link #castleRights}, {@link #enPassantTarget}, and
+ * {@link #fullMoveCounter} as well as necessary.
  * 
  * @author Phil Leszczynski
  */
@@ -62,6 +64,7 @@ public class Board {
     this.fullMoveCounter = 1;
 
     this.setPositionHash();
+    this.setPieceSquareSums();
   }
 
   /**
@@ -99,6 +102,16 @@ public class Board {
     this.positionHasher = other.positionHasher;
     this.positionHash = other.positionHash;
     this.positionHashPawnsKings = other.positionHashPawnsKings;
+    this.pieceSquareMidgame = other.pieceSquareMidgame;
+    this.pieceSquareEndgame = other.pieceSquareEndgame;
+    this.phase = other.phase;
+    this.pieceSquareTable = other.pieceSquareTable;
+    this.neuralNetwork = other.neuralNetwork;
+    if (other.accumulators != null) {
+      this.accumulators = new short[2][];
+      this.accumulators[0] = other.accumulators[0].clone();
+      this.accumulators[1] = other.accumulators[1].clone();
+    }
   }
 
   /**
@@ -181,6 +194,27 @@ public class Board {
     return legalMoveGenerator.legalMovesFast(this, capturesOnly);
   }
 
+  /**
+   * Returns the pseudo-legal moves for the player in {@link #turn} that do not capture. See
+   * {@link LegalMoveGenerator#legalMovesFastQuiet(Board)} for more details.
+   * 
+   * @return an ArrayList of pseudo-legal moves that do not capture for the current position
+   */
+  public ArrayList<Move> legalMovesFastQuiet() {
+    return legalMoveGenerator.legalMovesFastQuiet(this);
+  }
+
+  /**
+   * Returns whether a move is pseudo-legal for the player in {@link #turn}, without generating the
+   * pseudo-legal moves. See {@link LegalMoveGenerator#isPseudoLegal(Board, Move)}.
+   * 
+   * @param move the move to test, which may be null
+   * @return true if the move is pseudo-legal, false otherwise
+   */
+  public boolean isPseudoLegal(Move move) {
+    return legalMoveGenerator.isPseudoLegal(this, move);
+  }
+
   /**
    * Returns the legal moves for the player in {@link #turn}. This includes all legal moves per the
    * rules of chess, not just pseudo-legal moves.
@@ -191,6 +225,52 @@ public class Board {
     return legalMoveGenerator.legalMoves(this);
   }
 
+  /**
+   * Adds a piece to the piece-square sums {@link #pieceSquareMidgame} and
+   * {@link #pieceSquareEndgame}, to the game {@link #phase}, and to the neural network
+   * {@link #accumulators} if there are any. This does not touch the bitboards.
+   * 
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the piece's square, 0-63
+   */
+  private void pieceSquareAdd(Color color, Piece piece, int index) {
+    if (color == Color.WHITE) {
+      this.pieceSquareMidgame += this.pieceSquareTable.midgame(color, piece, index);
+      this.pieceSquareEndgame += this.pieceSquareTable.endgame(color, piece, index);
+    } else {
+      this.pieceSquareMidgame -= this.pieceSquareTable.midgame(color, piece, index);
+      this.pieceSquareEndgame -= this.pieceSquareTable.endgame(color, piece, index);
+    }
+    this.phase += PieceSquareTable.phase(piece);
+    if (this.accumulators != null) {
+      this.neuralNetwork.addFeature(this.accumulators, color, piece, index);
+    }
+  }
+
+  /**
+   * Removes a piece from the piece-square sums {@link #pieceSquareMidgame} and
+   * {@link #pieceSquareEndgame}, from the game {@link #phase}, and from the neural network
+   * {@link #accumulators} if there are any. This does not touch the bitboards.
+   * 
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the piece's square, 0-63
+   */
+  private void pieceSquareRemove(Color color, Piece piece, int index) {
+    if (color == Color.WHITE) {
+      this.pieceSquareMidgame -= this.pieceSquareTable.midgame(color, piece, index);
+      this.pieceSquareEndgame -= this.pieceSquareTable.endgame(color, piece, index);
+    } else {
+      this.pieceSquareMidgame += this.pieceSquareTable.midgame(color, piece, index);
+      this.pieceSquareEndgame += this.pieceSquareTable.endgame(color, piece, index);
+    }
+    this.phase -= PieceSquareTable.phase(piece);
+    if (this.accumulators != null) {
+      this.neuralNetwork.removeFeature(this.accumulators, color, piece, index);
+    }
+  }
+
   /**
    * When making a move, handles the special case where the opponent's rook is captured. In this
    * case the castling rights corresponding to that rook must be removed. This handles the unusual
@@ -240,6 +320,7 @@ public class Board {
       Bitboard bitboard = entry2.getValue();
       if (bitboard.intersects(destinationMask)) {
         bitboard.updateRemove(destinationMask);
+        this.pieceSquareRemove(turnFlipped, piece, move.destination);
         this.positionHash ^= this.positionHasher.getMask(turnFlipped, piece, move.destination);
         if (piece == Piece.PAWN || piece == Piece.KING) {
           this.positionHashPawnsKings ^=
@@ -270,6 +351,8 @@ public class Board {
         movedPiece = piece;
         bitboard.updateRemove(sourceMask);
         bitboard.updateUnion(destinationMask);
+        this.pieceSquareRemove(this.turn, piece, move.source);
+        this.pieceSquareAdd(this.turn, piece, move.destination);
         this.positionHash ^=
             this.positionHasher.getMask(this.turn, piece, move.source, move.destination);
         if (piece == Piece.PAWN || piece == Piece.KING) {
@@ -308,6 +391,7 @@ public class Board {
     }
 
     this.bitboards.get(turnFlipped).get(Piece.PAWN).updateRemove(destinationMaskRetreatedOneRow);
+    this.pieceSquareRemove(turnFlipped, Piece.PAWN, destinationRetreatedOneRow);
     this.positionHash ^=
         this.positionHasher.getMask(turnFlipped, Piece.PAWN, destinationRetreatedOneRow);
     this.positionHashPawnsKings ^=
@@ -402,6 +486,8 @@ public class Board {
 
     this.bitboards.get(this.turn).get(Piece.ROOK).updateRemove(rookStart);
     this.bitboards.get(this.turn).get(Piece.ROOK).updateUnion(rookEnd);
+    this.pieceSquareRemove(this.turn, Piece.ROOK, rookSource);
+    this.pieceSquareAdd(this.turn, Piece.ROOK, rookDestination);
     this.positionHash ^=
         this.positionHasher.getMask(this.turn, Piece.ROOK, rookSource, rookDestination);
   }
@@ -433,6 +519,8 @@ public class Board {
 
     this.bitboards.get(this.turn).get(Piece.ROOK).updateRemove(rookStart);
     this.bitboards.get(this.turn).get(Piece.ROOK).updateUnion(rookEnd);
+    this.pieceSquareRemove(this.turn, Piece.ROOK, rookSource);
+    this.pieceSquareAdd(this.turn, Piece.ROOK, rookDestination);
     this.positionHash ^=
         this.positionHasher.getMask(this.turn, Piece.ROOK, rookSource, rookDestination);
   }
@@ -451,6 +539,8 @@ public class Board {
 
     this.bitboards.get(this.turn).get(Piece.PAWN).updateRemove(destinationMask);
     this.bitboards.get(this.turn).get(move.promoteTo).updateUnion(destinationMask);
+    this.pieceSquareRemove(this.turn, Piece.PAWN, move.destination);
+    this.pieceSquareAdd(this.turn, move.promoteTo, move.destination);
     this.positionHash ^= this.positionHasher.getMask(this.turn, Piece.PAWN, move.destination);
     this.positionHash ^= this.positionHasher.getMask(this.turn, move.promoteTo, move.destination);
     this.positionHashPawnsKings ^=
@@ -570,6 +660,7 @@ public class Board {
     this.fullMoveCounter = 1;
     this.updateSummaryBitboards();
     this.setPositionHash();
+    this.setPieceSquareSums();
   }
 
   /**
@@ -653,6 +744,74 @@ public class Board {
     this.fullMoveCounter = Integer.parseInt(fullMoveCounter);
 
     this.setPositionHash();
+    this.setPieceSquareSums();
+  }
+
+  /**
+   * Packs the position into {@link #PACKED_LENGTH} longs, so that many positions can be kept in a
+   * single array and loaded back with {@link #setPositionPacked(long[], int)} much faster than by
+   * parsing their FEN strings again. The first twelve longs are the piece bitboards, indexed by
+   * color ordinal times six plus piece ordinal. They are followed by the en passant target, a long
+   * holding the side to move in bit 0, the castling rights in bits 1-4, and the full move counter
+   * in the bits above, and the two position hashes.
+   * 
+   * @param packed the array to pack the position into
+   * @param offset the index in the array of the first long to write
+   */
+  public void packPosition(long[] packed, int offset) {
+    for (Color color : Color.values()) {
+      for (Piece piece : Board.pieces) {
+        packed[offset + 6 * color.ordinal() + piece.ordinal()] =
+            this.bitboards.get(color).get(piece).getData();
+      }
+    }
+    long flags = this.turn == Color.BLACK ? 1 : 0;
+    int bit = 1;
+    for (Color color : Color.values()) {
+      for (Castle castle : Castle.values()) {
+        if (this.castleRights.get(color).get(castle)) {
+          flags |= 1L << bit;
+        }
+        bit++;
+      }
+    }
+    flags |= (long) this.fullMoveCounter << 8;
+    packed[offset + 12] = this.enPassantTarget;
+    packed[offset + 13] = flags;
+    packed[offset + 14] = this.positionHash;
+    packed[offset + 15] = this.positionHashPawnsKings;
+  }
+
+  /**
+   * Sets the board to a position packed by {@link #packPosition(long[], int)}. The position hashes
+   * are taken as packed rather than computed again; the piece-square sums are recomputed, since
+   * they depend on this board's piece-square tables.
+   * 
+   * @param packed the array holding the packed position
+   * @param offset the index in the array of the first long of the position
+   */
+  public void setPositionPacked(long[] packed, int offset) {
+    for (Color color : Color.values()) {
+      for (Piece piece : Board.pieces) {
+        this.bitboards.get(color).get(piece)
+            .setData(packed[offset + 6 * color.ordinal() + piece.ordinal()]);
+      }
+    }
+    this.updateSummaryBitboards();
+    this.enPassantTarget = packed[offset + 12];
+    long flags = packed[offset + 13];
+    this.turn = (flags & 1) != 0 ? Color.BLACK : Color.WHITE;
+    int bit = 1;
+    for (Color color : Color.values()) {
+      for (Castle castle : Castle.values()) {
+        this.castleRights.get(color).put(castle, (flags & (1L << bit)) != 0);
+        bit++;
+      }
+    }
+    this.fullMoveCounter = (int) (flags >>> 8);
+    this.positionHash = packed[offset + 14];
+    this.positionHashPawnsKings = packed[offset + 15];
+    this.setPieceSquareSums();
   }
 
   /**
@@ -673,15 +832,79 @@ public class Board {
     }
     return null;
   }
+
+  /**
+   * Returns the type of piece of a given color on a given square. Returns null if that color has
+   * no piece there. This is cheaper than {@link #pieceOnSquare(Square)} and is meant for use during
+   * the search.
+   *
+   * @param color the color of the piece to look for
+   * @param index the index of the square, 0-63
+   * @return the type of piece of the given color on the square, or null if none is found
+   */
+  public Piece pieceOnSquare(Color color, int index) {
+    long mask = 1L << index;
+    Map<Piece, Bitboard> bitboardsForColor = this.bitboards.get(color);
+    for (Piece piece : Board.pieces) {
+      if (bitboardsForColor.get(piece).intersects(mask)) {
+        return piece;
+      }
+    }
+    return null;
+  }
   
   /**
-   * Returns whether or not the given move is a capture.
+   * Returns whether or not the given move is a capture, including an en passant capture, which is
+   * a pawn of the player to move landing on the {@link #enPassantTarget}.
    * 
    * @param move the move to test for capture
    * @return true if the move is a capture on the given board, false otherwise
    */
   public boolean isCapture(Move move) {
-    return (this.allPieces.intersects(1L << move.destination));
+    long destinationMask = 1L << move.destination;
+    if (this.allPieces.intersects(destinationMask)) {
+      return true;
+    }
+    return destinationMask == this.enPassantTarget
+        && this.bitboards.get(this.turn).get(Piece.PAWN).intersects(1L << move.source);
+  }
+
+  /**
+   * Returns the squares attacked by a piece on a given square, with long range pieces blocked by
+   * the pieces on the board. See {@link LegalMoveGenerator#attackSquares(Color, Piece, int, long)}
+   * for more details.
+   *
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the square the piece is on, 0-63
+   * @return the 64-bit long mask of squares attacked by the piece
+   */
+  public long attackSquares(Color color, Piece piece, int index) {
+    return legalMoveGenerator.attackSquares(color, piece, index, this.allPieces.getData());
+  }
+
+  /**
+   * Returns the static exchange evaluation of a move, or the material the player to move gains on
+   * the destination square once all captures and recaptures there are played out. See
+   * {@link LegalMoveGenerator#see(Board, Move)} for more details.
+   *
+   * @param move the pseudo-legal move to evaluate, typically a capture
+   * @return the material gained in centipawns, negative if the exchange loses material
+   */
+  public int see(Move move) {
+    return legalMoveGenerator.see(this, move);
+  }
+
+  /**
+   * Returns whether the static exchange evaluation of a move is at least a given threshold. See
+   * {@link LegalMoveGenerator#see(Board, Move)} for more details.
+   *
+   * @param move the pseudo-legal move to evaluate, typically a capture
+   * @param threshold the minimum material gain in centipawns
+   * @return true if the exchange gains at least the threshold, false otherwise
+   */
+  public boolean seeGreaterOrEqual(Move move, int threshold) {
+    return legalMoveGenerator.seeGreaterOrEqual(this, move, threshold);
   }
 
   /**
@@ -717,6 +940,58 @@ public class Board {
     this.positionHash ^= this.positionHasher.getMaskCastleRights(this.castleRights);
   }
 
+  /**
+   * Sets the piece-square sums {@link #pieceSquareMidgame} and {@link #pieceSquareEndgame}, the
+   * game {@link #phase}, and the neural network {@link #accumulators} if there are any from
+   * scratch for the current board position. During the search they are instead updated
+   * incrementally as moves are made.
+   */
+  public void setPieceSquareSums() {
+    this.pieceSquareMidgame = 0;
+    this.pieceSquareEndgame = 0;
+    this.phase = 0;
+    if (this.accumulators != null) {
+      this.neuralNetwork.resetAccumulators(this.accumulators);
+    }
+    for (Color color : Color.values()) {
+      for (Piece piece : Board.pieces) {
+        long pieces = this.bitboards.get(color).get(piece).getData();
+        while (pieces != 0) {
+          int index = Long.numberOfTrailingZeros(pieces);
+          pieces ^= 1L << index;
+          this.pieceSquareAdd(color, piece, index);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the piece-square tables used for the piece-square sums, and recomputes the sums for the
+   * current board position. Boards copied from this one share the tables. The evaluation should
+   * use the parameters the tables were built from, see
+   * {@link Evaluation#setParameters(EvaluationParameters)}.
+   * 
+   * @param pieceSquareTable the piece-square tables to sum
+   */
+  public void setPieceSquareTable(PieceSquareTable pieceSquareTable) {
+    this.pieceSquareTable = pieceSquareTable;
+    this.setPieceSquareSums();
+  }
+
+  /**
+   * Sets the neural network used to evaluate this board, and computes its accumulators for the
+   * current board position. Boards copied from this one share the network and carry their own
+   * copies of the accumulators.
+   * 
+   * @param neuralNetwork the neural network to evaluate with, or null to use the hand-crafted
+   *        evaluation in {@link Evaluation}
+   */
+  public void setNeuralNetwork(NeuralNetwork neuralNetwork) {
+    this.neuralNetwork = neuralNetwork;
+    this.accumulators = neuralNetwork == null ? null : neuralNetwork.newAccumulators();
+    this.setPieceSquareSums();
+  }
+
   /**
    * Updates the summary bitboards {@link #playerBitboards} and {@link #allPieces} for the current
    * board position.
@@ -814,7 +1089,49 @@ public class Board {
    */
   public long positionHashPawnsKings;
 
+  /**
+   * The sum of the middlegame piece-square values of white's pieces minus that of black's pieces,
+   * including material. See {@link PieceSquareTable}.
+   */
+  public int pieceSquareMidgame;
+
+  /**
+   * The sum of the endgame piece-square values of white's pieces minus that of black's pieces,
+   * including material. See {@link PieceSquareTable}.
+   */
+  public int pieceSquareEndgame;
+
+  /**
+   * The game phase, or the weighted count of the knights, bishops, rooks, and queens on the board.
+   * It starts at {@link PieceSquareTable#PHASE_MAX} and decreases towards 0 as pieces are traded.
+   * See {@link PieceSquareTable#phase(Piece)}.
+   */
+  public int phase;
+
+  /**
+   * The piece-square tables that {@link #pieceSquareMidgame} and {@link #pieceSquareEndgame} are
+   * summed from. See {@link #setPieceSquareTable(PieceSquareTable)}.
+   */
+  public PieceSquareTable pieceSquareTable = PieceSquareTable.DEFAULT;
+
+  /**
+   * The neural network used to evaluate this board, or null if the hand-crafted evaluation is used.
+   * See {@link #setNeuralNetwork(NeuralNetwork)}.
+   */
+  public NeuralNetwork neuralNetwork = null;
+
+  /**
+   * The hidden layer of {@link #neuralNetwork} from each player's perspective, indexed by color
+   * ordinal. It is updated incrementally as moves are made, and is null if there is no network.
+   */
+  public short[][] accumulators = null;
+
+  /** The number of longs in a packed position, see {@link #packPosition(long[], int)}. */
+  public static int PACKED_LENGTH = 16;
+
   private static LegalMoveGenerator legalMoveGenerator = new LegalMoveGenerator();
+  // Cached since Piece.values() allocates a new array on every call.
+  private static Piece[] pieces = Piece.values();
   private PositionHasher positionHasher = null;
 
   // Convenience bitboards for castling.
@@ -1,6 +1,7 @@
 package tactician;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import tactician.Board;
 
@@ -16,7 +17,7 @@ import tactician.Board;
  * that {@link #totalDepth} is the number of plies, so if we calculate white's move and then black's
  * move that counts as two plies. The search efficiency can be dramatically improved through
  * alpha-beta pruning, which prunes branches of the search tree that are known ahead of time not to
- * lead to the optimal move. See {@link #alphabeta(Board, int, float, float)} for more details.
+ * lead to the optimal move. See {@link #alphabeta(Board, int, int, int, int)} for more details.
  * 
  * @see <a href="https://en.wikipedia.org/wiki/Alpha%E2%80%93beta_pruning">Alpha-Beta Pruning</a>
  * @author Phil Leszczynski
@@ -26,13 +27,18 @@ public class Brain {
    * Initializes a brain by setting up the transposition table.
    */
   public Brain() {
-    this.killerMoves = new Move[totalDepth + 1][2];
+    this.killerMoves = new Move[2 * totalDepth][2];
+    this.searchMoves = new Move[2 * totalDepth];
+    this.searchPieces = new Piece[2 * totalDepth];
+    // With check extensions the search can reach a ply of twice the depth.
+    this.principalVariations = new Move[2 * totalDepth + 1][2 * totalDepth + 1];
+    this.principalVariationLengths = new int[2 * totalDepth + 1];
     this.transpositionTable = new TranspositionTable(transpositionTableSize);
   }
   
   /**
-   * Unsets the array of killer moves indexed by depth. A killer move is one that produced a beta
-   * cutoff in a previous branch of the game tree at the same depth.
+   * Unsets the array of killer moves indexed by ply. A killer move is one that produced a beta
+   * cutoff in a previous branch of the game tree at the same ply.
    */
   private void unsetKillerMoves() {
     for(int i = 0; i < this.killerMoves.length; i++) {
@@ -43,63 +49,268 @@ public class Brain {
   }
   
   /**
-   * Inserts a killer move at the given depth and removes a previous killer move if necessary.
+   * Inserts a killer move at the given ply and removes a previous killer move if necessary.
    * @param move the new killer move
-   * @param depth the depth at which to store the killer move
+   * @param ply the distance from the root at which to store the killer move
    */
-  private void insertKillerMove(Move move, int depth) {
-    if(this.isKillerMove(move, depth)) {
+  private void insertKillerMove(Move move, int ply) {
+    if(this.isKillerMove(move, ply)) {
       return;
     }
-    this.killerMoves[depth][0] = this.killerMoves[depth][1];
-    this.killerMoves[depth][1] = move;
+    this.killerMoves[ply][0] = this.killerMoves[ply][1];
+    this.killerMoves[ply][1] = move;
   }
   
   /**
-   * Checks whether the given move is a killer move for the given depth.
+   * Checks whether the given move is a killer move for the given ply.
    * @param move the move to test
-   * @param depth the depth at which to check for killer moves
+   * @param ply the distance from the root at which to check for killer moves
    * @return true if the move is in the killer move list, false otherwise
    */
-  private boolean isKillerMove(Move move, int depth) {
-    return (move.equals(this.killerMoves[depth][0]) || move.equals(this.killerMoves[depth][1]));
+  private boolean isKillerMove(Move move, int ply) {
+    return (move.equals(this.killerMoves[ply][0]) || move.equals(this.killerMoves[ply][1]));
   }
   
+  /**
+   * Applies a bonus or penalty to a history score using a gravity formula. The adjustment shrinks
+   * as the score approaches {@link #HISTORY_MAX} in magnitude, so the score stays bounded and
+   * recent cutoffs can outweigh old ones.
+   * 
+   * @param score the current history score
+   * @param bonus the bonus to apply, negative for a penalty
+   * @return the updated history score
+   */
+  private static int historyGravity(int score, int bonus) {
+    return score + bonus - score * Math.abs(bonus) / HISTORY_MAX;
+  }
+
+  /**
+   * Returns the history score of a quiet move, the sum of its butterfly history and its
+   * continuation history following the move that led to the current position.
+   * 
+   * @param board the current board position
+   * @param move the quiet move to score
+   * @param ply the distance of the current position from the root
+   * @return the history score, higher for moves that caused more cutoffs
+   */
+  private int quietMoveScore(Board board, Move move, int ply) {
+    int color = board.turn.ordinal();
+    int score = this.history[color][move.source][move.destination];
+    Piece previousPiece = ply > 0 ? this.searchPieces[ply - 1] : null;
+    Piece piece = board.pieceOnSquare(board.turn, move.source);
+    // The piece can be missing for a castling move if the castling rights were set from a FEN
+    // string that has no king on its home square.
+    if (previousPiece != null && piece != null) {
+      int previousIndex =
+          MovePicker.pieceSquareIndex(previousPiece, this.searchMoves[ply - 1].destination);
+      int index = MovePicker.pieceSquareIndex(piece, move.destination);
+      score += this.continuationHistory[color][previousIndex][index];
+    }
+    return score;
+  }
+
+  /**
+   * Updates the history tables after a quiet move caused a beta cutoff. The move gets a bonus in
+   * the butterfly and continuation histories and is recorded as the countermove to the previous
+   * move. The quiet moves searched before it get a penalty, since they failed to cause the cutoff.
+   * 
+   * @param board the board position where the cutoff happened
+   * @param move the quiet move that caused the cutoff
+   * @param quietsSearched the quiet moves searched before the cutoff move
+   * @param depth the search depth where the cutoff happened
+   * @param ply the distance of the position from the root
+   */
+  private void updateQuietHistory(Board board, Move move, ArrayList<Move> quietsSearched,
+      int depth, int ply) {
+    int color = board.turn.ordinal();
+    int bonus = Math.min(depth * depth, HISTORY_BONUS_MAX);
+    this.history[color][move.source][move.destination] =
+        historyGravity(this.history[color][move.source][move.destination], bonus);
+    for (Move quiet : quietsSearched) {
+      this.history[color][quiet.source][quiet.destination] =
+          historyGravity(this.history[color][quiet.source][quiet.destination], -bonus);
+    }
+
+    if (ply == 0) {
+      return;
+    }
+    Move previousMove = this.searchMoves[ply - 1];
+    Piece previousPiece = this.searchPieces[ply - 1];
+    if (previousMove == null) {
+      return;
+    }
+    this.counterMoves[color][previousMove.source][previousMove.destination] = move;
+    if (previousPiece == null) {
+      return;
+    }
+    int previousIndex = MovePicker.pieceSquareIndex(previousPiece, previousMove.destination);
+    int[] continuation = this.continuationHistory[color][previousIndex];
+    Piece piece = board.pieceOnSquare(board.turn, move.source);
+    if (piece != null) {
+      int index = MovePicker.pieceSquareIndex(piece, move.destination);
+      continuation[index] = historyGravity(continuation[index], bonus);
+    }
+    for (Move quiet : quietsSearched) {
+      Piece quietPiece = board.pieceOnSquare(board.turn, quiet.source);
+      if (quietPiece != null) {
+        int index = MovePicker.pieceSquareIndex(quietPiece, quiet.destination);
+        continuation[index] = historyGravity(continuation[index], -bonus);
+      }
+    }
+  }
+
+  /**
+   * Halves all the history scores. This is done at the start of each search so that what was
+   * learned in earlier positions still guides move ordering but gradually gives way to the
+   * current position.
+   */
+  private void ageHistory() {
+    for (int[][] historyForColor : this.history) {
+      for (int[] historyForSource : historyForColor) {
+        for (int i = 0; i < historyForSource.length; i++) {
+          historyForSource[i] /= 2;
+        }
+      }
+    }
+    for (int[][] continuationForColor : this.continuationHistory) {
+      for (int[] continuationForPrevious : continuationForColor) {
+        for (int i = 0; i < continuationForPrevious.length; i++) {
+          continuationForPrevious[i] /= 2;
+        }
+      }
+    }
+  }
+
+  /**
+   * Sorts moves in place by descending score. Insertion sort is used since move lists are short.
+   * 
+   * @param moves the moves to sort
+   * @param scores the score of each move, sorted along with the moves
+   */
+  private static void sortMovesByScore(ArrayList<Move> moves, int[] scores) {
+    for (int i = 1; i < moves.size(); i++) {
+      Move move = moves.get(i);
+      int score = scores[i];
+      int j = i - 1;
+      while (j >= 0 && scores[j] < score) {
+        moves.set(j + 1, moves.get(j));
+        scores[j + 1] = scores[j];
+        j--;
+      }
+      moves.set(j + 1, move);
+      scores[j + 1] = score;
+    }
+  }
+
   /**
    * Given an ArrayList of legal moves, sorts them in the most beneficial way for the alpha-beta
    * search. As a general rule moves that are more likely to be optimal should be searched first,
-   * as well as moves that are risky.
+   * as well as moves that are risky. Captures that lose material according to the static exchange
+   * evaluation (see {@link Board#see(Move)}) are unlikely to be best, so they go after the
+   * noncaptures. After the killer moves comes the countermove to the previous move, and the
+   * remaining noncaptures are ordered by their history scores. This is only used at the root
+   * node, where all the legal moves are needed anyway; below the root the moves are handed out
+   * lazily in the same order by a {@link MovePicker}.
    * @param legalMoves the list of legal moves to sort
    * @param board the current board position
-   * @param depth the current search depth
+   * @param ply the distance of the current position from the root
    * @param lastBestMove the move found in the transposition table at the current position, or null
    * @return a sorted ArrayList of the same fast legal moves
    */
-  private ArrayList<Move> sortLegalMoves(ArrayList<Move> legalMoves, Board board, int depth,
+  private ArrayList<Move> sortLegalMoves(ArrayList<Move> legalMoves, Board board, int ply,
       Move lastBestMove) {
     ArrayList<Move> transpositionTableMoves = new ArrayList<Move>();
     ArrayList<Move> captureMoves = new ArrayList<Move>();
     ArrayList<Move> killerMoves = new ArrayList<Move>();
+    ArrayList<Move> counterMoves = new ArrayList<Move>();
     ArrayList<Move> noncaptureMoves = new ArrayList<Move>();
+    ArrayList<Move> losingCaptureMoves = new ArrayList<Move>();
+    Move previousMove = ply > 0 ? this.searchMoves[ply - 1] : null;
+    Move counterMove = null;
+    if (previousMove != null) {
+      counterMove =
+          this.counterMoves[board.turn.ordinal()][previousMove.source][previousMove.destination];
+    }
     for (Move move : legalMoves) {
       if (move.equals(lastBestMove)) {
         transpositionTableMoves.add(move);
       } else if (board.isCapture(move)) {
-        captureMoves.add(move);
-      } else if (this.isKillerMove(move, depth)) {
+        if (board.seeGreaterOrEqual(move, 0)) {
+          captureMoves.add(move);
+        } else {
+          losingCaptureMoves.add(move);
+        }
+      } else if (this.isKillerMove(move, ply)) {
         killerMoves.add(move);
+      } else if (move.equals(counterMove)) {
+        counterMoves.add(move);
       } else {
         noncaptureMoves.add(move);
       }
     }
+    int[] noncaptureScores = new int[noncaptureMoves.size()];
+    for (int i = 0; i < noncaptureScores.length; i++) {
+      noncaptureScores[i] = this.quietMoveScore(board, noncaptureMoves.get(i), ply);
+    }
+    sortMovesByScore(noncaptureMoves, noncaptureScores);
     ArrayList<Move> result = new ArrayList<Move>();
     result.addAll(transpositionTableMoves);
     result.addAll(captureMoves);
     result.addAll(killerMoves);
+    result.addAll(counterMoves);
     result.addAll(noncaptureMoves);
+    result.addAll(losingCaptureMoves);
     return result;
   }
 
+  /**
+   * Returns the score for the player to move when their king is captured a given number of plies
+   * from the root. Mates closer to the root score further from zero, so the engine prefers to
+   * mate as quickly as possible and to be mated as slowly as possible.
+   * 
+   * @param ply the distance from the root at which the king is captured
+   * @return the mate score from the perspective of the player whose king is captured
+   */
+  private static int matedFitness(int ply) {
+    return -Evaluation.FITNESS_LARGE + ply * Evaluation.FITNESS_MOVE;
+  }
+
+  /**
+   * Converts a score relative to the root into a score relative to the current node, for storing
+   * in the transposition table. Mate scores count plies from the root, but the same position can
+   * be reached at different plies, so the table stores the distance to mate from the position
+   * itself.
+   * 
+   * @param fitness the score of the node relative to the root
+   * @param ply the distance of the node from the root
+   * @return the score to store in the transposition table
+   */
+  private static int fitnessToTransposition(int fitness, int ply) {
+    if (fitness >= Evaluation.FITNESS_MATE_BOUND) {
+      return fitness + ply * Evaluation.FITNESS_MOVE;
+    } else if (fitness <= -Evaluation.FITNESS_MATE_BOUND) {
+      return fitness - ply * Evaluation.FITNESS_MOVE;
+    }
+    return fitness;
+  }
+
+  /**
+   * Converts a score read from the transposition table back into a score relative to the root.
+   * This is the inverse of {@link #fitnessToTransposition(int, int)}.
+   * 
+   * @param fitness the score stored in the transposition table
+   * @param ply the distance of the node from the root
+   * @return the score of the node relative to the root
+   */
+  private static int fitnessFromTransposition(int fitness, int ply) {
+    if (fitness >= Evaluation.FITNESS_MATE_BOUND) {
+      return fitness - ply * Evaluation.FITNESS_MOVE;
+    } else if (fitness <= -Evaluation.FITNESS_MATE_BOUND) {
+      return fitness + ply * Evaluation.FITNESS_MOVE;
+    }
+    return fitness;
+  }
+
   /**
    * Evaluates the position at an alpha-beta leaf node. Instead of immediately doing a static
    * evaluation through the {@link #fitness(Board)} method, we first exhaust the possibility of any
@@ -107,41 +318,50 @@ public class Brain {
    * behavior. For example we want to avoid a queen capturing a guarded pawn at the leaf node and
    * thinking it's a good move since the recapture of the queen is just outside the search depth.
    * Note this implementation is different from the standard because it only considers recaptures on
-   * the same destination square.
+   * the same destination square. Captures that lose material according to the static exchange
+   * evaluation are skipped, since standing pat is at least as good for the capturing side.
+   * 
+   * <p>The stand-pat score comes from {@link Evaluation#fitnessLazy(Board, int, int)}, which skips
+   * the expensive evaluation terms when material alone puts the position well outside of the
+   * window.
    * 
    * @see <a href="http://chessprogramming.wikispaces.com/Quiescence+Search"> Quiescence Search</a>
    * @param board the board with which to perform the quiescent search
-   * @param alpha the running alpha score tracked by {@link #alphabeta(Board, int, float, float)}
-   * @param beta the running beta score tracked by {@link #alphabeta(Board, int, float, float)}
+   * @param ply the distance of the position from the root
+   * @param alpha the running alpha score tracked by {@link #alphabeta(Board, int, int, int, int)}
+   * @param beta the running beta score tracked by {@link #alphabeta(Board, int, int, int, int)}
    * @param target the 64-bit long mask containing the capture target if any, see {@link Bitboard}
    *        for the 64-bit mask implementation
    * @return the quiescent search score subject to the standard alpha-beta pruning negamax
-   *         implementation, see {@link #alphabeta(Board, int, float, float)} for more details
+   *         implementation, see {@link #alphabeta(Board, int, int, int, int)} for more details
    */
-  private float quiescentSearch(Board board, float alpha, float beta, long target) {
-    float fitness = evaluation.fitness(board);
+  private int quiescentSearch(Board board, int ply, int alpha, int beta, long target) {
+    if (ply > this.statistics.selectiveDepth) {
+      this.statistics.selectiveDepth = ply;
+    }
+    // The player whose king gets captured first loses, even if the other king gets captured next
+    // turn. This has to be checked before standing pat, since the static evaluation of a position
+    // without a king is not a mate score.
+    if (board.bitboards.get(board.turn).get(Piece.KING).isEmpty()) {
+      return matedFitness(ply);
+    }
+    int fitness = evaluation.fitnessLazy(board, alpha, beta);
     if (fitness >= beta) {
       return beta;
     }
     if (fitness > alpha) {
       alpha = fitness;
     }
-    // The player whose king gets captured first loses, even if the other king gets captured next
-    // turn. Reduce the benefit by each move of the game to incentivize checkmate as quickly as
-    // possible.
-    if (board.bitboards.get(board.turn).get(Piece.KING).isEmpty()) {
-      return -Evaluation.FITNESS_LARGE + board.fullMoveCounter * Evaluation.FITNESS_MOVE;
-    }
-    ArrayList<Move> lmf = this.sortLegalMoves(board.legalMovesFast(true), board, 0, null);
-    for (Move move : lmf) {
+    // Only probe captures happening on the same square.
+    MovePicker picker = new MovePicker(board, target);
+    Move move;
+    while ((move = picker.next()) != null) {
       long moveTarget = 1L << move.destination;
-      if (target != -1 && moveTarget != target) {
-        // Only probe captures happening on the same square.
-        continue;
-      }
       Board copy = new Board(board);
       copy.move(move);
-      fitness = -this.quiescentSearch(copy, -beta, -alpha, moveTarget);
+      this.statistics.nodes++;
+      this.statistics.quiescentNodes++;
+      fitness = -this.quiescentSearch(copy, ply + 1, -beta, -alpha, moveTarget);
       if (fitness >= beta) {
         return beta;
       }
@@ -154,7 +374,7 @@ public class Brain {
 
   /**
    * Performs a recursive alpha-beta depth-first search to a given depth. Runs a quiescent search
-   * through {@link #quiescentSearch(Board, float, float, long)} at the leaf nodes.
+   * through {@link #quiescentSearch(Board, int, int, int, long)} at the leaf nodes.
    * 
    * <p>Alpha-beta pruning is a modified depth-first search that prunes branches that are certain
    * to not lead to the optimal move. To paraphrase the Chess Programming article below, consider a
@@ -173,29 +393,75 @@ public class Brain {
    * roughly speaking each player's beta is the negative of the opponent's alpha. The Negamax
    * article below outlines the process more fully.
    * 
+   * <p>Positions where the player to move is in check are searched one ply deeper, so that forcing
+   * sequences of checks are not cut off at the horizon. To keep the search from running away, a
+   * node is only extended while its ply plus its remaining depth is less than twice the depth of
+   * the current iteration. Once a mate has been found, mate-distance pruning cuts any branch that
+   * could only lead to a slower mate, since even a mate at the next ply could not improve on it.
+   * 
+   * <p>Move ordering matters most at deep nodes, since their subtrees are the largest. When such a
+   * node has no move in the transposition table we first run a shallower search on it, an internal
+   * iterative deepening, and try its best move first.
+   * 
    * @see <a href="https://en.wikipedia.org/wiki/Alpha%E2%80%93beta_pruning"> Alpha-Beta Pruning</a>
    * @see <a href="http://chessprogramming.wikispaces.com/Alpha-Beta">Alpha-Beta</a>
    * @see <a href="https://en.wikipedia.org/wiki/Negamax">Negamax</a>
+   * @see <a href="http://chessprogramming.wikispaces.com/Check+Extensions">Check Extensions</a>
+   * @see <a href="http://chessprogramming.wikispaces.com/Mate+Distance+Pruning">Mate Distance
+   *      Pruning</a>
+   * @see <a href="http://chessprogramming.wikispaces.com/Internal+Iterative+Deepening">Internal
+   *      Iterative Deepening</a>
    * @param board the board for which to perform the search
    * @param depth the depth in plies for which to search
+   * @param ply the distance in plies of the board from the root of the search
    * @param alpha the score of the best move found for the current player
    * @param beta the highest score the opponent would allow, or the negative of the opponent's alpha
    * @return the evaluation of the board position to the given depth in centipawns
    */
-  public float alphabeta(Board board, int depth, float alpha, float beta) {
+  public int alphabeta(Board board, int depth, int ply, int alpha, int beta) {
+    if (ply > this.statistics.selectiveDepth) {
+      this.statistics.selectiveDepth = ply;
+    }
+    this.principalVariationLengths[ply] = ply;
+    // The player whose king gets captured first loses, even if the other king gets captured next
+    // turn.
+    if (board.bitboards.get(board.turn).get(Piece.KING).isEmpty()) {
+      return matedFitness(ply);
+    }
+    // At best we capture the opponent's king with our next move, and at worst our king is already
+    // gone. If that window is outside of alpha and beta then no move here can matter.
+    alpha = Math.max(alpha, matedFitness(ply));
+    beta = Math.min(beta, -matedFitness(ply + 1));
+    if (alpha >= beta) {
+      return alpha;
+    }
+    boolean inCheck = board.isInCheck();
+    int unextendedDepth = depth;
+    if (inCheck && ply + depth < 2 * this.iterationDepth) {
+      depth++;
+    }
     if (depth == 0) {
-      return this.quiescentSearch(board, alpha, beta, -1);
+      return this.quiescentSearch(board, ply, alpha, beta, -1);
     }
     TranspositionTable.TranspositionEntry entry = this.transpositionTable.get(board.positionHash);
+    this.statistics.transpositionProbes++;
     Move lastBestMove = null;
     if (entry != null) {
+      this.statistics.transpositionHits++;
       if (entry.depth == depth) {
+        int entryFitness = fitnessFromTransposition(entry.fitness, ply);
         if (entry.type == TranspositionTable.TranspositionType.NODE_PV) {
-          return entry.fitness;
+          // The line below this node was found by an earlier search, so only its first move is
+          // known.
+          if (entry.bestMove != null) {
+            this.principalVariations[ply][ply] = entry.bestMove;
+            this.principalVariationLengths[ply] = ply + 1;
+          }
+          return entryFitness;
         } else if (entry.type == TranspositionTable.TranspositionType.NODE_CUT) {
           // We know that since we had a cutoff we can at least achieve a score of entry.fitness,
           // so set alpha to that.
-          alpha = entry.fitness;
+          alpha = entryFitness;
         }
         if (alpha >= beta) {
           return beta;
@@ -203,38 +469,96 @@ public class Brain {
       }
       lastBestMove = entry.bestMove;
     }
-    ArrayList<Move> lmf = this.sortLegalMoves(board.legalMovesFast(false), board, depth,
-        lastBestMove);
-    // Special case where the king is captured and there are no pieces remaining for the side to
-    // move. We still want to discount the fitness by how many moves it took to get there.
-    if(lmf.size() == 0) {
-      return -Evaluation.FITNESS_LARGE + board.fullMoveCounter * Evaluation.FITNESS_MOVE;
+    // Without a transposition table entry a deep node falls back on the static move ordering,
+    // which is much worse. Instead do a shallower search first to find a good move, as it leaves
+    // its best move in the transposition table. A node with an entry but no move has already been
+    // searched and failed low, and searching it shallower again would only fail low again. The
+    // shallower search starts from the depth before any check extension, since it extends again
+    // itself.
+    if (entry == null && depth >= IID_MIN_DEPTH) {
+      this.alphabeta(board, unextendedDepth - IID_REDUCTION, ply, alpha, beta);
+      this.principalVariationLengths[ply] = ply;
+      entry = this.transpositionTable.get(board.positionHash);
+      if (entry != null) {
+        lastBestMove = entry.bestMove;
+      }
+    }
+    int color = board.turn.ordinal();
+    Move previousMove = ply > 0 ? this.searchMoves[ply - 1] : null;
+    Piece previousPiece = ply > 0 ? this.searchPieces[ply - 1] : null;
+    Move counterMove = null;
+    int[] continuation = null;
+    if (previousMove != null) {
+      counterMove = this.counterMoves[color][previousMove.source][previousMove.destination];
+      if (previousPiece != null) {
+        continuation = this.continuationHistory[color][MovePicker.pieceSquareIndex(previousPiece,
+            previousMove.destination)];
+      }
     }
+    MovePicker picker = new MovePicker(board, lastBestMove, this.killerMoves[ply], counterMove,
+        this.history[color], continuation);
     TranspositionTable.TranspositionType nodeType = TranspositionTable.TranspositionType.NODE_ALL;
     Move bestMove = null;
-    for (Move move : lmf) {
+    ArrayList<Move> quietsSearched = new ArrayList<Move>();
+    int movesSearched = 0;
+    Move move;
+    while ((move = picker.next()) != null) {
+      movesSearched++;
+      boolean isQuiet = !board.isCapture(move);
+      this.searchMoves[ply] = move;
+      this.searchPieces[ply] = board.pieceOnSquare(board.turn, move.source);
       Board copy = new Board(board);
       copy.move(move);
-      float fitness = -this.alphabeta(copy, depth - 1, -beta, -alpha);
+      this.statistics.nodes++;
+      int fitness = -this.alphabeta(copy, depth - 1, ply + 1, -beta, -alpha);
       if (fitness >= beta) {
-        this.transpositionTable.put(depth, board.positionHash, beta, bestMove,
-            TranspositionTable.TranspositionType.NODE_CUT);
-        this.insertKillerMove(move, depth);
+        this.statistics.betaCutoffs++;
+        if (movesSearched == 1) {
+          this.statistics.betaCutoffsFirstMove++;
+        }
+        this.statistics.transpositionStores++;
+        this.transpositionTable.put(depth, board.positionHash, fitnessToTransposition(beta, ply),
+            move, TranspositionTable.TranspositionType.NODE_CUT);
+        this.insertKillerMove(move, ply);
+        if (isQuiet) {
+          this.updateQuietHistory(board, move, quietsSearched, depth, ply);
+        }
         return beta;
       }
+      if (isQuiet) {
+        quietsSearched.add(move);
+      }
       if (fitness > alpha) {
         nodeType = TranspositionTable.TranspositionType.NODE_PV;
         bestMove = move;
         alpha = fitness;
+        this.updatePrincipalVariation(move, ply);
       }
     }
-    this.transpositionTable.put(depth, board.positionHash, alpha, bestMove, nodeType);
+    // Special case where the player to move has a king but it and the other pieces are all blocked.
+    // If the king is attacked it gets captured next turn, otherwise treat this as a stalemate.
+    if (movesSearched == 0) {
+      return inCheck ? matedFitness(ply + 2) : 0;
+    }
+    // If our king is captured right after our move then we are checkmated, and the rest of the
+    // line is not made of legal moves.
+    if (alpha == matedFitness(ply + 2)) {
+      this.principalVariationLengths[ply] = ply;
+    }
+    // No move raised alpha at an all node, so keep the move that was tried first, from the
+    // transposition table or the internal iterative deepening, to order the next visit.
+    if (bestMove == null) {
+      bestMove = lastBestMove;
+    }
+    this.statistics.transpositionStores++;
+    this.transpositionTable.put(depth, board.positionHash, fitnessToTransposition(alpha, ply),
+        bestMove, nodeType);
     return alpha;
   }
 
   /**
    * Determines the best move to play on a board to a given depth using
-   * {@link #alphabeta(Board, int, float, float)}. Note that this does not include iterative
+   * {@link #alphabeta(Board, int, int, int, int)}. Note that this does not include iterative
    * deepening, so in a real game {@link #getMove(Board)} should be used instead.
    * 
    * @param board the board to analyze
@@ -243,61 +567,81 @@ public class Brain {
    */
   public Move getMoveToDepth(Board board, int depth) {
     Move bestMove = null;
-    float alpha = -Evaluation.FITNESS_LARGE;
-    float beta = Evaluation.FITNESS_LARGE;
+    int alpha = -Evaluation.FITNESS_LARGE;
+    int beta = Evaluation.FITNESS_LARGE;
     this.unsetKillerMoves();
-    ArrayList<Move> legalMovesSorted = this.sortLegalMoves(board.legalMoves(), board, depth, null);
+    this.iterationDepth = depth;
+    this.principalVariationLengths[0] = 0;
+    this.bestMoveChanges = 0;
+    ArrayList<Move> legalMovesSorted = this.sortLegalMoves(board.legalMoves(), board, 0, null);
+    int moveNumber = 0;
     for (Move move : legalMovesSorted) {
+      moveNumber++;
+      if (this.searchListener != null
+          && System.currentTimeMillis() - this.searchStart >= CURRENT_MOVE_DELAY) {
+        this.searchListener.currentMove(depth, move, moveNumber);
+      }
+      this.searchMoves[0] = move;
+      this.searchPieces[0] = board.pieceOnSquare(board.turn, move.source);
       Board copy = new Board(board);
       copy.move(move);
-      float fitness = -this.alphabeta(copy, depth - 1, -beta, -alpha);
+      this.statistics.nodes++;
+      int fitness = -this.alphabeta(copy, depth - 1, 1, -beta, -alpha);
       if (fitness > alpha || bestMove == null) {
+        if (bestMove != null) {
+          this.bestMoveChanges++;
+        }
         bestMove = move;
         alpha = fitness;
+        this.updatePrincipalVariation(move, 0);
       }
     }
+    this.bestFitness = alpha;
     return bestMove;
   }
 
   /**
-   * Returns the principal variation stemming from a given board and move, as determined by the
-   * transposition table. In other words it is the engine's best guess for the next player's move
-   * followed by the original player's move after that, and so on. This can be helpful for
-   * debugging; if the engine makes an unusual move, then seeing the principal variation can help us
-   * understand its reasoning. Note that we try to get the principal variation to
-   * {@link #totalDepth} moves but this is not always possible. For example the transposition table
-   * entry in the middle may have been overridden due to a hash collision and in that case we cannot
-   * look at the fully calculated principal variation.
+   * Records a new best move at a node in the triangular array of principal variations: the line
+   * at the node becomes the move followed by the line at the child node it leads to, which the
+   * search of that move has just filled in. Row p of the array holds the line from ply p, in
+   * columns p onwards, so the rows shrink towards the leaves and the whole array is allocated
+   * once; see {@link #principalVariations}.
+   * 
+   * @see <a href="http://chessprogramming.wikispaces.com/Triangular+PV-Table">Triangular
+   *      PV-Table</a>
+   * @param move the new best move at the node
+   * @param ply the distance in plies of the node from the root
+   */
+  private void updatePrincipalVariation(Move move, int ply) {
+    Move[] line = this.principalVariations[ply];
+    line[ply] = move;
+    int length = ply + 1;
+    if (length < line.length) {
+      int childLength = this.principalVariationLengths[ply + 1];
+      System.arraycopy(this.principalVariations[ply + 1], ply + 1, line, ply + 1,
+          childLength - (ply + 1));
+      length = childLength;
+    }
+    this.principalVariationLengths[ply] = length;
+  }
+
+  /**
+   * Returns the principal variation of the last completed iteration. In other words it is the
+   * engine's best move followed by its best guess for the next player's move, then the original
+   * player's move after that, and so on. This can be helpful for debugging; if the engine makes an
+   * unusual move, then seeing the principal variation can help us understand its reasoning.
+   * 
+   * <p>The line is collected during the search, see
+   * {@link #updatePrincipalVariation(Move, int)}, so it is exactly the line the search scored. It
+   * ends early where the search did: at a mate, or at a position whose score was taken from the
+   * transposition table, after the best move stored with it.
    * 
-   * @param board the board for which to calculate the principal variation
-   * @param move the starting move for which to calculate the principal variation
-   * @return an ArrayList of moves listing the principal variation after the given move
+   * @return an ArrayList of moves listing the principal variation, starting with the best move
    */
-  public ArrayList<Move> getPrincipalVariation(Board board, Move move) {
+  public ArrayList<Move> getPrincipalVariation() {
     ArrayList<Move> principalVariation = new ArrayList<Move>();
-    principalVariation.add(move);
-    Board copy = new Board(board);
-    for (int d = 1; d < this.totalDepth; d++) {
-      copy = new Board(copy);
-      ArrayList<Move> legalMoves = copy.legalMoves();
-      Move pvMove = principalVariation.get(principalVariation.size() - 1);
-      boolean moveFound = false;
-      for (Move legalMove : legalMoves) {
-        if (legalMove.equals(pvMove)) {
-          moveFound = true;
-          break;
-        }
-      }
-      if (!moveFound) {
-        principalVariation.remove(principalVariation.size() - 1);
-        break;
-      }
-      copy.move(pvMove);
-      TranspositionTable.TranspositionEntry entry = this.transpositionTable.get(copy.positionHash);
-      if (entry == null || entry.bestMove == null) {
-        break;
-      }
-      principalVariation.add(entry.bestMove);
+    for (int i = 0; i < this.principalVariationLengths[0]; i++) {
+      principalVariation.add(this.principalVariations[0][i]);
     }
     return principalVariation;
   }
@@ -315,16 +659,261 @@ public class Brain {
    * @return the best move to play according to the engine
    */
   public Move getMove(Board board) {
+    return this.getMove(board, this.totalDepth);
+  }
+
+  /**
+   * Determines the best move for a given board through iterative deepening to the given depth.
+   * See {@link #getMove(Board)}. The search statistics are reset at the start, see
+   * {@link #getStatistics()}.
+   * 
+   * @param board the board for which to get the best move
+   * @param depth the depth in plies of the last iteration, at most the default search depth
+   * @return the best move to play according to the engine
+   */
+  public Move getMove(Board board, int depth) {
+    if (depth < 1 || depth > this.totalDepth) {
+      throw new IllegalArgumentException("Search depth must be between 1 and " + this.totalDepth
+          + " but got " + depth);
+    }
     Move move = null;
-    for (int d = 1; d <= this.totalDepth; d++) {
+    this.searchStart = System.currentTimeMillis();
+    this.searchEnd = 0;
+    this.statistics.reset();
+    this.ageHistory();
+    for (int d = 1; d <= depth; d++) {
+      SearchIterationEvent event = new SearchIterationEvent();
+      event.begin();
+      long nodesBefore = this.statistics.nodes;
+      Move previousMove = move;
       move = this.getMoveToDepth(board, d);
+      this.statistics.endIteration();
+      event.end();
+      if (event.shouldCommit()) {
+        event.depth = d;
+        event.selectiveDepth = this.statistics.selectiveDepth;
+        event.nodes = this.statistics.nodes - nodesBefore;
+        event.bestMove = String.valueOf(move);
+        event.fitness = this.bestFitness;
+        event.bestMoveChanges = this.bestMoveChanges;
+        event.bestMoveChanged = previousMove != null && !previousMove.equals(move);
+        event.commit();
+      }
+      if (this.searchListener != null) {
+        this.searchListener.iterationComplete(d, this.statistics.selectiveDepth,
+            this.bestFitness, this.statistics.nodes, System.currentTimeMillis() - this.searchStart,
+            this.transpositionTable.hashfull(), this.getPrincipalVariation());
+      }
     }
+    this.searchEnd = System.currentTimeMillis();
     return move;
   }
 
+  /**
+   * Returns the largest depth accepted by {@link #getMove(Board, int)}, which is also the depth
+   * searched by {@link #getMove(Board)}.
+   * 
+   * @return the maximum search depth in plies
+   */
+  public int getMaxDepth() {
+    return this.totalDepth;
+  }
+
+  /**
+   * Returns the depth of the current iteration of the search, or of the last iteration if no
+   * search is running.
+   * 
+   * @return the iteration depth in plies
+   */
+  public int getIterationDepth() {
+    return this.iterationDepth;
+  }
+
+  /**
+   * Returns the time taken by the last call to {@link #getMove(Board, int)}, or the time since it
+   * started if it is still running.
+   * 
+   * @return the search time in milliseconds, or 0 if there has been no search
+   */
+  public long getSearchTime() {
+    if (this.searchStart == 0) {
+      return 0;
+    }
+    long end = this.searchEnd != 0 ? this.searchEnd : System.currentTimeMillis();
+    return end - this.searchStart;
+  }
+
+  /**
+   * Returns the number of nodes visited by the last call to {@link #getMove(Board, int)}, or
+   * since it started if it is still running. Every position reached by making a move counts as a
+   * node, in the main search and the quiescent search alike. Since the search is deterministic,
+   * the node count for a given position and depth also serves as a fingerprint of the search
+   * and evaluation, provided the search starts from a cleared state; see {@link #clear()}.
+   * 
+   * @return the number of nodes searched
+   */
+  public long getNodes() {
+    return this.statistics.nodes;
+  }
+
+  /**
+   * Returns the statistics of the last call to {@link #getMove(Board, int)}, or of the search so
+   * far if it is still running. The object is reused by the next search, so callers should read
+   * the figures they need rather than keep it.
+   * 
+   * @return the search statistics
+   */
+  public SearchStatistics getStatistics() {
+    return this.statistics;
+  }
+
+  /**
+   * Sets the listener to report the progress of each search to, see {@link SearchListener}.
+   * 
+   * @param searchListener the listener, or null to not report progress
+   */
+  public void setSearchListener(SearchListener searchListener) {
+    this.searchListener = searchListener;
+  }
+
+  /**
+   * Forgets everything learned from previous searches: empties the transposition table and the
+   * evaluation's hash tables, and resets the killer moves, countermoves, and history scores. The
+   * next search then behaves as in a freshly started engine.
+   */
+  public void clear() {
+    this.transpositionTable.clear();
+    this.evaluation.clearHashTables();
+    this.unsetKillerMoves();
+    for (int[][] historyForColor : this.history) {
+      for (int[] historyForSource : historyForColor) {
+        Arrays.fill(historyForSource, 0);
+      }
+    }
+    for (int[][] continuationForColor : this.continuationHistory) {
+      for (int[] continuationForPrevious : continuationForColor) {
+        Arrays.fill(continuationForPrevious, 0);
+      }
+    }
+    for (Move[][] counterMovesForColor : this.counterMoves) {
+      for (Move[] counterMovesForSource : counterMovesForColor) {
+        Arrays.fill(counterMovesForSource, null);
+      }
+    }
+  }
+
+  /**
+   * Returns the evaluation used for the static evaluation at the leaf nodes of the search.
+   * 
+   * @return the evaluation used by the search
+   */
+  public Evaluation getEvaluation() {
+    return this.evaluation;
+  }
+
+  /**
+   * Returns the transposition table shared by the searches of this brain.
+   * 
+   * @return the transposition table
+   */
+  public TranspositionTable getTranspositionTable() {
+    return this.transpositionTable;
+  }
+
   private int totalDepth = 6;
+
+  /** The counters of the current or last search, see {@link #getStatistics()}. */
+  private SearchStatistics statistics = new SearchStatistics();
+
+  /** The listener to report the progress of the search to, or null. */
+  private SearchListener searchListener = null;
+
+  /**
+   * The time in milliseconds after the start of a search from which the listener is told about
+   * each root move as it is searched. Short searches would only flood the GUI with these.
+   */
+  private static long CURRENT_MOVE_DELAY = 1000;
+
+  /** The time at which the current or last search started, in milliseconds since the epoch. */
+  private long searchStart = 0;
+
+  /** The time at which the last search ended, or 0 while a search is running. */
+  private long searchEnd = 0;
+
+  /** The score of the best move found by the last iteration, see {@link #getMoveToDepth}. */
+  private int bestFitness = 0;
+
+  /**
+   * The number of times the last iteration replaced its best move at the root, reported in
+   * {@link SearchIterationEvent}.
+   */
+  private int bestMoveChanges = 0;
+
+  /**
+   * The depth of the current iterative deepening iteration. The check extensions along any path
+   * are bounded so that no node is searched past twice this many plies from the root.
+   */
+  private int iterationDepth = 0;
   private Evaluation evaluation = new Evaluation();
   private Move[][] killerMoves = null;
+
+  /**
+   * The butterfly history, indexed by color, source square, and destination square. It scores
+   * quiet moves by how often they caused a beta cutoff anywhere in the search tree.
+   */
+  private int[][][] history = new int[2][64][64];
+
+  /**
+   * The countermoves, indexed by color and by the source and destination squares of the
+   * opponent's previous move. A countermove is the last quiet move that caused a beta cutoff in
+   * reply to that previous move.
+   */
+  private Move[][][] counterMoves = new Move[2][64][64];
+
+  /**
+   * The continuation history, indexed by color, the piece and destination of the opponent's
+   * previous move, and the piece and destination of the quiet move. See
+   * {@link MovePicker#pieceSquareIndex(Piece, int)} for the piece and square indexing.
+   */
+  private int[][][] continuationHistory = new int[2][384][384];
+
+  /**
+   * The moves played along the current search path, indexed by the ply of the node they were
+   * played from. The node at a given ply finds the move that led to it at ply - 1.
+   */
+  private Move[] searchMoves = null;
+
+  /** The type of piece that moved for each entry in {@link #searchMoves}. */
+  private Piece[] searchPieces = null;
+
+  /**
+   * The triangular array of principal variations, indexed by the ply of a node and then by ply
+   * again: row p holds the best line found from the node at ply p in columns p onwards. See
+   * {@link #updatePrincipalVariation(Move, int)}.
+   */
+  private Move[][] principalVariations = null;
+
+  /**
+   * For each ply, the ply at which the line in {@link #principalVariations} ends. A line of
+   * length zero ends at its own ply.
+   */
+  private int[] principalVariationLengths = null;
+
   private TranspositionTable transpositionTable = null;
   private static int transpositionTableSize = 32 * 1024 * 1024;
+
+  /** The largest magnitude a history score can reach, see {@link #historyGravity(int, int)}. */
+  private static int HISTORY_MAX = 16384;
+
+  /** The largest bonus applied to a history score for a single cutoff. */
+  private static int HISTORY_BONUS_MAX = 400;
+
+  /**
+   * The smallest remaining depth at which a node without a transposition table entry gets an
+   * internal iterative deepening search.
+   */
+  private static int IID_MIN_DEPTH = 4;
+
+  /** How many plies shallower the internal iterative deepening search is than the node. */
+  private static int IID_REDUCTION = 2;
 }
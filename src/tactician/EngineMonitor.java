@@ -0,0 +1,123 @@
+package tactician;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class exposes the live state of the engine as a JMX management bean, so that a long-running
+ * engine can be watched with the same tools as any other JVM service, such as JConsole,
+ * VisualVM, or a JMX exporter feeding a monitoring system. See {@link EngineMonitorMXBean} for the
+ * attributes and operations.
+ *
+ * <p>The attributes are read on a JMX thread while the engine may be searching. The counters they
+ * come from are plain fields updated by the search without any synchronization, so the values
+ * can lag slightly behind, which is fine for monitoring. The operations take effect immediately;
+ * clearing the hash tables in the middle of a search costs it the work stored so far but does not
+ * make it play an illegal move.
+ *
+ * @author Phil Leszczynski
+ */
+public class EngineMonitor implements EngineMonitorMXBean {
+  /**
+   * Initializes a monitor of the given brain, which searches on the calling thread. The number of
+   * perft threads belongs to whoever runs perft, so it is read and written through the given
+   * functions.
+   *
+   * @param brain the brain to monitor
+   * @param perftThreadsGetter returns the number of threads used by perft
+   * @param perftThreadsSetter sets the number of threads used by perft
+   */
+  public EngineMonitor(Brain brain, IntSupplier perftThreadsGetter,
+      IntConsumer perftThreadsSetter) {
+    this.brain = brain;
+    this.perftThreadsGetter = perftThreadsGetter;
+    this.perftThreadsSetter = perftThreadsSetter;
+    this.threadId = Thread.currentThread().getId();
+  }
+
+  /**
+   * Registers a monitor with the platform MBean server under the name {@link #OBJECT_NAME}.
+   *
+   * @param monitor the monitor to register
+   * @throws JMException if the monitor could not be registered
+   */
+  public static void register(EngineMonitor monitor) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, new ObjectName(OBJECT_NAME));
+  }
+
+  @Override
+  public int getSearchDepth() {
+    return this.brain.getIterationDepth();
+  }
+
+  @Override
+  public long getNodes() {
+    return this.brain.getStatistics().nodes;
+  }
+
+  @Override
+  public long getNodesPerSecond() {
+    return this.getNodes() * 1000 / Math.max(this.brain.getSearchTime(), 1);
+  }
+
+  @Override
+  public double getTranspositionHitRate() {
+    return this.brain.getStatistics().transpositionHitRate();
+  }
+
+  @Override
+  public int getHashfull() {
+    return this.brain.getTranspositionTable().hashfull();
+  }
+
+  @Override
+  public double getEvaluationHitRate() {
+    return this.brain.getEvaluation().getEvaluationHashTable().getHitRate();
+  }
+
+  @Override
+  public double getPawnKingHitRate() {
+    return this.brain.getEvaluation().getPawnKingHashTable().getHitRate();
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(this.threadId);
+  }
+
+  @Override
+  public int getPerftThreads() {
+    return this.perftThreadsGetter.getAsInt();
+  }
+
+  @Override
+  public void setPerftThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Perft threads must be at least 1 but got " + threads);
+    }
+    this.perftThreadsSetter.accept(threads);
+  }
+
+  @Override
+  public void clearHashTables() {
+    this.brain.getTranspositionTable().clear();
+    this.brain.getEvaluation().clearHashTables();
+  }
+
+  /** The name under which {@link #register(EngineMonitor)} registers the monitor. */
+  public static String OBJECT_NAME = "tactician:type=Engine";
+
+  private Brain brain;
+  private IntSupplier perftThreadsGetter;
+  private IntConsumer perftThreadsSetter;
+  private long threadId;
+}
@@ -0,0 +1,90 @@
+package tactician;
+
+/**
+ * This interface lists the attributes and operations of the engine that are exposed over JMX, see
+ * {@link EngineMonitor}. The names follow the JMX conventions: each getter is a read-only
+ * attribute, a getter and setter pair is a writable attribute, and the remaining methods are
+ * operations.
+ *
+ * @author Phil Leszczynski
+ */
+public interface EngineMonitorMXBean {
+  /**
+   * Returns the depth of the current iteration of the search, or the last one if the engine is
+   * idle.
+   *
+   * @return the iteration depth in plies
+   */
+  int getSearchDepth();
+
+  /**
+   * Returns the number of nodes of the current or last search.
+   *
+   * @return the number of nodes
+   */
+  long getNodes();
+
+  /**
+   * Returns the speed of the current or last search.
+   *
+   * @return the number of nodes per second
+   */
+  long getNodesPerSecond();
+
+  /**
+   * Returns the fraction of transposition table probes of the current or last search that found
+   * an entry.
+   *
+   * @return the hit rate between 0 and 1
+   */
+  double getTranspositionHitRate();
+
+  /**
+   * Returns how full the transposition table is, as reported in UCI info lines.
+   *
+   * @return the fraction of entries in use, in permille
+   */
+  int getHashfull();
+
+  /**
+   * Returns the hit rate of the evaluation cache since it was last cleared.
+   *
+   * @return the hit rate between 0 and 1
+   */
+  double getEvaluationHitRate();
+
+  /**
+   * Returns the hit rate of the pawn/king hash table since it was last cleared.
+   *
+   * @return the hit rate between 0 and 1
+   */
+  double getPawnKingHitRate();
+
+  /**
+   * Returns the number of bytes allocated on the heap by the engine's thread so far. Sampling it
+   * before and after a search shows how much garbage the search creates.
+   *
+   * @return the number of bytes allocated, or -1 if the JVM does not measure it
+   */
+  long getAllocatedBytes();
+
+  /**
+   * Returns the number of threads used by {@code go perft}.
+   *
+   * @return the number of perft threads
+   */
+  int getPerftThreads();
+
+  /**
+   * Sets the number of threads used by {@code go perft}, from the next perft on.
+   *
+   * @param threads the number of perft threads, at least 1
+   */
+  void setPerftThreads(int threads);
+
+  /**
+   * Empties the transposition table and the evaluation's hash tables. Searches after this behave
+   * as in a freshly started engine, apart from the move ordering histories.
+   */
+  void clearHashTables();
+}
@@ -1,8 +1,5 @@
 package tactician;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This class computes the static evaluation of a board position. This includes factors such as
  * material, king safety, open files for rooks, and pawn structure. It only looks at the current
@@ -13,68 +10,63 @@ import java.util.Map;
  * there is the classic rule of thumb that a queen is worth 9 pawns, a rook is worth 5, and a
  * bishop and knight are each worth 3. This way to count material provides a good estimate; we also
  * use factors such as pawn structure, king safety, and piece activity. As a general rule the
- * fitness evaluations are in centipawns, with a pawn being worth 100. See {@link #fitness(Board)}
- * for more details.
+ * fitness evaluations are in centipawns, with a pawn being worth 100. Scores are integers so that
+ * the search can compare them exactly and cheaply; see {@link #FITNESS_LARGE} for how mate scores
+ * fit around the static evaluations. See {@link #fitness(Board)} for more details. The weights of
+ * the individual terms are kept in {@link EvaluationParameters}, so that they can be loaded from a
+ * file.
  * 
  * @author Phil Leszczynski
  */
 public class Evaluation {
   /**
-   * Initializes an evaluation. Creates the transposition tables, sets the material weights for
-   * each piece, sets the material weight for the starting position, and sets several helper
-   * variables related to king safety.
+   * Initializes an evaluation with the default parameters and creates the hash tables.
    */
   public Evaluation() {
-    this.fitnessPiece.put(Piece.BISHOP, 333f);
-    this.fitnessPiece.put(Piece.KING, 1000000f);
-    this.fitnessPiece.put(Piece.KNIGHT, 320f);
-    this.fitnessPiece.put(Piece.PAWN, 100f);
-    this.fitnessPiece.put(Piece.QUEEN, 880f);
-    this.fitnessPiece.put(Piece.ROOK, 510f);
-
-    this.fitnessStartNoKing = 2 * fitnessPiece.get(Piece.ROOK)
-        + 2 * fitnessPiece.get(Piece.KNIGHT) + 2 * fitnessPiece.get(Piece.BISHOP)
-        + fitnessPiece.get(Piece.QUEEN) + 8 * fitnessPiece.get(Piece.PAWN);
-    
-    this.pawnShieldQueenside = new HashMap<Color, Bitboard>();
-    this.pawnShieldQueensideForward = new HashMap<Color, Bitboard>();
-    this.pawnShieldKingside = new HashMap<Color, Bitboard>();
-    this.pawnShieldKingsideForward = new HashMap<Color, Bitboard>();
-
-    this.pawnShieldQueenside.put(Color.WHITE, new Bitboard("a2", "b2", "c2"));
-    this.pawnShieldQueensideForward.put(Color.WHITE, new Bitboard("a3", "b3", "c3"));
-    this.pawnShieldKingside.put(Color.WHITE, new Bitboard("f2", "g2", "h2"));
-    this.pawnShieldKingsideForward.put(Color.WHITE, new Bitboard("f3", "g3", "h3"));
-
-    this.pawnShieldQueenside.put(Color.BLACK, this.pawnShieldQueenside.get(Color.WHITE).flip());
-    this.pawnShieldQueensideForward.put(Color.BLACK,
-        this.pawnShieldQueensideForward.get(Color.WHITE).flip());
-    this.pawnShieldKingside.put(Color.BLACK, this.pawnShieldKingside.get(Color.WHITE).flip());
-    this.pawnShieldKingsideForward.put(Color.BLACK,
-        this.pawnShieldKingsideForward.get(Color.WHITE).flip());
-    
     this.pawnKingHashTable = new PawnKingHashTable(pawnKingTableSize);
+    this.evaluationHashTable = new EvaluationHashTable(evaluationTableSize);
+    this.setParameters(new EvaluationParameters());
   }
-  
+
   /**
-   * Returns the fraction of the opponent's material that has been removed. At the start of the game
-   * this returns 1.0f; if the opponent has just a king left this returns 0.0f.
+   * Returns the parameters the evaluation is using. They must not be modified in place, since the
+   * evaluation hash table would then hold stale scores; pass a modified copy to
+   * {@link #setParameters(EvaluationParameters)} instead.
+   * 
+   * @return the evaluation parameters
+   */
+  public EvaluationParameters getParameters() {
+    return this.parameters;
+  }
+
+  /**
+   * Sets the parameters the evaluation uses, for example after loading them from a file with
+   * {@link EvaluationParameters#load(String)}. The evaluation hash table is cleared, since the
+   * scores stored in it used the old parameters.
+   * 
+   * <p>Material and piece placement are taken from the piece-square sums kept by the board, so the
+   * board should be given tables built from the same parameters, see
+   * {@link Board#setPieceSquareTable(PieceSquareTable)}.
+   * 
+   * @param parameters the new evaluation parameters
+   */
+  public void setParameters(EvaluationParameters parameters) {
+    this.parameters = parameters;
+    this.evaluationHashTable.clear();
+  }
+
+  /**
+   * Returns the fraction of the way into the endgame, judging by the game phase that the board
+   * keeps up to date as pieces are captured, see {@link Board#phase}. At the start of the game
+   * this returns 0.0f; if only kings and pawns are left this returns 1.0f.
    * 
    * @param board the board to evaluate the endgame fraction
-   * @return the fraction of the way we are into the endgame, judging by the fraction of the
-   *         opponent's material that is still on the board
+   * @return the fraction of the way we are into the endgame, judging by the knights, bishops,
+   *         rooks, and queens that have been removed from the board
    */
   public float endgameFraction(Board board) {
-    float material = 0;
-    for (Map.Entry<Piece, Float> entry : this.fitnessPiece.entrySet()) {
-      Piece piece = entry.getKey();
-      if (piece == Piece.KING) {
-        continue;
-      }
-      int pieceCount = board.bitboards.get(Color.flip(board.turn)).get(piece).numOccupied();
-      material += pieceCount * this.fitnessPiece.get(piece);
-    }
-    return 1 - material / this.fitnessStartNoKing;
+    int phase = Math.min(board.phase, PieceSquareTable.PHASE_MAX);
+    return 1 - (float) phase / PieceSquareTable.PHASE_MAX;
   }
   
   /**
@@ -84,6 +76,10 @@ public class Evaluation {
    * the board. Additionally we have a bonus for an intact pawn shield in front of a castled king
    * early on in the game as this hinders the opponent's attack.
    * 
+   * <p>Note that {@link #fitness(Board)} does not call this method. It takes the king placement
+   * part from the piece-square sums kept by the board and only adds
+   * {@link #fitnessKingShelter(long, Color, float)}.
+   * 
    * @param board the board to evaluate the king safety
    * @param color the player whose king safety to evaluate
    * @param endgameFraction the endgame fraction as calculated in {@link #endgameFraction(Board)}.
@@ -91,56 +87,36 @@ public class Evaluation {
    *        possible.
    * @return the given player's king safety score in centipawns
    */
-  public float fitnessKingSafety(Board board, Color color, float endgameFraction) {
-    int distanceFromHomeRank = 0;
+  public int fitnessKingSafety(Board board, Color color, float endgameFraction) {
     int kingIndex = board.bitboards.get(color).get(Piece.KING).numEmptyStartingSquares();
-    if (color == Color.WHITE) {
-      distanceFromHomeRank = (int) (kingIndex / 8);
-    } else {
-      distanceFromHomeRank = 7 - (int) (kingIndex / 8);
+    int placementFitness = Math.round(
+        board.pieceSquareTable.kingPlacement(color, kingIndex) * (0.6f - endgameFraction));
+    long entry = this.pawnKingHashTable.probe(board);
+    return placementFitness + this.fitnessKingShelter(entry, color, endgameFraction);
+  }
+
+  /**
+   * Returns the part of the given player's king safety that comes from the pawns in front of the
+   * king: a penalty for a missing or advanced pawn shield and a penalty for an open file, both of
+   * which fade out towards the endgame. The unscaled penalties are cached in the pawn/king hash
+   * table, see {@link PawnKingHashTable#pawnShieldPenalty(long, Color)}.
+   * 
+   * @param entry the packed pawn/king hash table entry for the board
+   * @param color the player whose king shelter to evaluate
+   * @param endgameFraction the endgame fraction as calculated in {@link #endgameFraction(Board)}
+   * @return the given player's king shelter score in centipawns, zero or negative
+   */
+  private int fitnessKingShelter(long entry, Color color, float endgameFraction) {
+    if (endgameFraction >= 0.7) {
+      return 0;
     }
-    float rankFitness =
-        -this.fitnessKingRankFactor * distanceFromHomeRank * (0.6f - endgameFraction);
-    float fileFitness = this.fitnessKingFile[kingIndex % 8] * (0.6f - endgameFraction);
-
-    float openFilePenalty = 0;
-    float pawnShieldPenalty = 0;
-    if (endgameFraction < 0.7) {
-      int protectorsHome = 3;
-      int protectorsOneStep = 0;
-      if (color == Color.WHITE) {
-        if (kingIndex % 8 <= 2) {
-          protectorsHome = board.bitboards.get(color).get(Piece.PAWN)
-              .intersection(pawnShieldQueenside.get(color)).numOccupied();
-          protectorsOneStep = board.bitboards.get(color).get(Piece.PAWN)
-              .intersection(pawnShieldQueensideForward.get(color)).numOccupied();
-        } else if (kingIndex % 8 >= 5) {
-          protectorsHome = board.bitboards.get(color).get(Piece.PAWN)
-              .intersection(pawnShieldKingside.get(color)).numOccupied();
-          protectorsOneStep = board.bitboards.get(color).get(Piece.PAWN)
-              .intersection(pawnShieldKingsideForward.get(color)).numOccupied();
-        }
-      }
-      if (protectorsHome + protectorsOneStep == 2) {
-        pawnShieldPenalty = 25 * protectorsHome + 50 * protectorsOneStep;
-      } else if (protectorsHome + protectorsOneStep == 1) {
-        pawnShieldPenalty = 50 * protectorsHome + 75 * protectorsOneStep;
-      } else if (protectorsHome + protectorsOneStep == 0) {
-        pawnShieldPenalty = 150;
-      }
-      pawnShieldPenalty *= (1 - endgameFraction);
-
-      if (kingIndex % 8 <= 2 || kingIndex % 8 >= 5) {
-        // Don't have an open file penalty before castling, as we may get opportunities to
-        // capture pawns in the center.
-        Bitboard file = Bitboard.bitboardFromFile(kingIndex % 8);
-        if (!board.bitboards.get(color).get(Piece.PAWN).intersects(file)) {
-          openFilePenalty = 150 * (1 - endgameFraction);
-        }
-      }
+    int pawnShieldPenalty =
+        Math.round(PawnKingHashTable.pawnShieldPenalty(entry, color) * (1 - endgameFraction));
+    int openFilePenalty = 0;
+    if (PawnKingHashTable.isKingOnOpenFile(entry, color)) {
+      openFilePenalty = Math.round(this.parameters.kingOpenFile * (1 - endgameFraction));
     }
-
-    return rankFitness + fileFitness - pawnShieldPenalty - openFilePenalty;
+    return -pawnShieldPenalty - openFilePenalty;
   }
   
   /**
@@ -156,10 +132,10 @@ public class Evaluation {
    *        possible.
    * @return the given player's rook open file bonus in centipawns
    */
-  public float fitnessRookFiles(Board board, Color color, float endgameFraction) {
+  public int fitnessRookFiles(Board board, Color color, float endgameFraction) {
     // Assign a bonus for a rook being on an open file (one with no pawns)
     // or a semi-open file (one with only enemy pawns).
-    float result = 0;
+    int result = 0;
     long rooks = board.bitboards.get(color).get(Piece.ROOK).getData();
     long myPawns = board.bitboards.get(color).get(Piece.PAWN).getData();
     long oppPawns = board.bitboards.get(Color.flip(color)).get(Piece.PAWN).getData();
@@ -167,12 +143,12 @@ public class Evaluation {
       int rookIndex = Long.numberOfTrailingZeros(rooks);
       long rook = 1L << rookIndex;
       rooks ^= rook;
-      Bitboard rookFile = Bitboard.bitboardFromFile(rookIndex % 8);
-      if (!rookFile.intersects(myPawns)) {
-        if (!rookFile.intersects(oppPawns)) {
-          result += this.fitnessRookOpenFile;
+      long rookFile = Bitboard.fileMasks[rookIndex % 8];
+      if ((rookFile & myPawns) == 0) {
+        if ((rookFile & oppPawns) == 0) {
+          result += this.parameters.rookOpenFile;
         } else {
-          result += this.fitnessRookSemiOpenFile;
+          result += this.parameters.rookSemiOpenFile;
         }
       }
     }
@@ -193,32 +169,31 @@ public class Evaluation {
    *        possible.
    * @return the given player's castle rights bonus in centipawns
    */
-  public float fitnessCastleRights(Board board, Color color, float endgameFraction) {
+  public int fitnessCastleRights(Board board, Color color, float endgameFraction) {
     if (endgameFraction > 0.5) {
       return 0;
     }
 
-    float result = 0;
+    int result = 0;
     boolean castleRightQueenside = board.castleRights.get(color).get(Castle.QUEENSIDE);
     boolean castleRightKingside = board.castleRights.get(color).get(Castle.KINGSIDE);
     if (castleRightQueenside) {
-      result += this.fitnessCastleRightQueenside;
+      result += this.parameters.castleRightQueenside;
     }
     if (castleRightKingside) {
-      result += this.fitnessCastleRightKingside;
+      result += this.parameters.castleRightKingside;
     }
 
-    int numPawnsQueenside = board.bitboards.get(color).get(Piece.PAWN)
-        .intersection(this.pawnShieldQueenside.get(color)).numOccupied();
-    int numPawnsKingside = board.bitboards.get(color).get(Piece.PAWN)
-        .intersection(this.pawnShieldKingside.get(color)).numOccupied();
-
-    result -= 10 * (3 - numPawnsQueenside);
-    result -= 25 * (3 - numPawnsKingside);
+    long pawns = board.bitboards.get(color).get(Piece.PAWN).getData();
+    int numPawnsQueenside =
+        Long.bitCount(pawns & PawnKingHashTable.pawnShieldQueenside[color.ordinal()]);
+    int numPawnsKingside =
+        Long.bitCount(pawns & PawnKingHashTable.pawnShieldKingside[color.ordinal()]);
 
-    result *= (1 - 2 * endgameFraction);
+    result -= this.parameters.castleShieldQueenside * (3 - numPawnsQueenside);
+    result -= this.parameters.castleShieldKingside * (3 - numPawnsKingside);
 
-    return result;
+    return Math.round(result * (1 - 2 * endgameFraction));
   }
   
   /**
@@ -228,57 +203,167 @@ public class Evaluation {
    * 
    * <p>To compute the fitness we take the following into account: material on board, a bonus for
    * the bishop pair, a penalty for doubled and isolated pawns, a bonus for passed pawns, a score
-   * for king safety, and a bonus for rook placement on open files.
+   * for king safety, a bonus for rook placement on open files, mobility, attacks on the king, and
+   * hanging pieces.
+   * 
+   * <p>Material and piece placement come from the piece-square sums that the board keeps up to
+   * date as moves are made, see {@link PieceSquareTable}. We taper between the middlegame and
+   * endgame sums by the board's game phase, so this part of the evaluation costs only a few
+   * arithmetic operations.
+   * 
+   * <p>If the board has a neural network set, see {@link Board#setNeuralNetwork(NeuralNetwork)},
+   * the network's evaluation is used instead of all of the above.
+   * 
+   * <p>Scores are memoized in an {@link EvaluationHashTable} keyed by the board's position hash,
+   * so a position that the search reaches again is not evaluated twice.
    * 
    * @see <a href="https://en.wikipedia.org/wiki/Glossary_of_chess#Bishop_pair">Bishop Pair</a>
    * @param board the board with which to perform a static evaluation
    * @return the static evaluation fitness score for the board
    */
-  public float fitness(Board board) {
-    float fitness = 0;
-    Color turnFlipped = Color.flip(board.turn);
-    for (Map.Entry<Piece, Float> entry : this.fitnessPiece.entrySet()) {
-      Piece piece = entry.getKey();
-      if (piece == Piece.PAWN) {
-        continue;
-      }
-      int myPieceCount = board.bitboards.get(board.turn).get(piece).numOccupied();
-      int oppPieceCount = board.bitboards.get(turnFlipped).get(piece).numOccupied();
-      fitness += (myPieceCount - oppPieceCount) * this.fitnessPiece.get(piece);
-      if (piece == Piece.BISHOP) {
-        if (myPieceCount >= 2) {
-          fitness += this.fitnessBishopPairBonus;
-        }
-        if (oppPieceCount >= 2) {
-          fitness -= this.fitnessBishopPairBonus;
-        }
-      }
+  public int fitness(Board board) {
+    int fitness = this.evaluationHashTable.get(board.positionHash);
+    if (fitness == EvaluationHashTable.NOT_FOUND) {
+      fitness = this.fitnessUncached(board);
+      this.evaluationHashTable.put(board.positionHash, fitness);
     }
+    return fitness;
+  }
 
-    float endgameFraction = this.endgameFraction(board);
+  /**
+   * Returns the evaluation hash table memoizing the results of {@link #fitness(Board)}, for
+   * example to report its hit rate or to clear it.
+   * 
+   * @return the evaluation hash table
+   */
+  public EvaluationHashTable getEvaluationHashTable() {
+    return this.evaluationHashTable;
+  }
+
+  /**
+   * Returns the pawn/king hash table caching the pawn structure and king shelter terms, for
+   * example to report its hit rate.
+   * 
+   * @return the pawn/king hash table
+   */
+  public PawnKingHashTable getPawnKingHashTable() {
+    return this.pawnKingHashTable;
+  }
 
-    Bitboard pawnBitboardRelativeToMe = board.bitboards.get(board.turn).get(Piece.PAWN);
-    Bitboard pawnBitboardRelativeToOpp = board.bitboards.get(turnFlipped).get(Piece.PAWN);
-    if (board.turn == Color.WHITE) {
-      pawnBitboardRelativeToOpp = pawnBitboardRelativeToOpp.flip();
-    } else {
-      pawnBitboardRelativeToMe = pawnBitboardRelativeToMe.flip();
+  /**
+   * Removes all entries from the evaluation and pawn/king hash tables. The scores would be the
+   * same either way, but {@link #fitnessLazy(Board, int, int)} returns a full evaluation instead
+   * of its estimate when one is cached, so clearing the tables makes a search repeatable.
+   */
+  public void clearHashTables() {
+    this.evaluationHashTable.clear();
+    this.pawnKingHashTable.clear();
+  }
+
+  /**
+   * Computes the static evaluation fitness score for a given board without consulting the
+   * evaluation hash table. See {@link #fitness(Board)}.
+   * 
+   * @param board the board with which to perform a static evaluation
+   * @return the static evaluation fitness score for the board
+   */
+  private int fitnessUncached(Board board) {
+    if (board.neuralNetwork != null) {
+      return board.neuralNetwork.evaluate(board);
     }
+    return this.fitnessQuick(board) + this.fitnessPositional(board);
+  }
 
-    PawnKingHashTable.PawnHashTableEntry entry =
-        this.pawnKingHashTable.get(board.positionHashPawnsKings);
-    if (entry == null) {
-      this.pawnKingHashTable.put(board.positionHashPawnsKings,
-          board.bitboards.get(Color.WHITE).get(Piece.PAWN).getData(),
-          board.bitboards.get(Color.BLACK).get(Piece.PAWN).getData(),
-          board.bitboards.get(Color.WHITE).get(Piece.KING).numEmptyStartingSquares(),
-          board.bitboards.get(Color.BLACK).get(Piece.KING).numEmptyStartingSquares());
-      entry = this.pawnKingHashTable.get(board.positionHashPawnsKings);
+  /**
+   * Returns a static evaluation of the board that skips the terms expensive to compute, or the full
+   * static evaluation if that is needed to compare the position with the alpha-beta window. We
+   * start with the quick estimate from {@link #fitnessQuick(Board)}. The remaining terms rarely
+   * add up to more than {@link #LAZY_MARGIN}, so if the estimate is that far above beta or below
+   * alpha then computing them would not change how the search treats the position, and we return
+   * the estimate instead.
+   * 
+   * <p>This is meant for the stand-pat decision in the quiescent search, where most positions are
+   * far outside of the window after a capture. Only full evaluations are stored in the evaluation
+   * hash table, but one found there is returned right away.
+   * 
+   * @see <a href="http://chessprogramming.wikispaces.com/Lazy+Evaluation">Lazy Evaluation</a>
+   * @param board the board with which to perform a static evaluation
+   * @param alpha the score of the best move found so far for the player to move
+   * @param beta the highest score the opponent would allow
+   * @return the quick estimate if it is outside of the window by at least {@link #LAZY_MARGIN},
+   *         otherwise the full static evaluation fitness score for the board
+   */
+  public int fitnessLazy(Board board, int alpha, int beta) {
+    int fitness = this.evaluationHashTable.get(board.positionHash);
+    if (fitness != EvaluationHashTable.NOT_FOUND) {
+      return fitness;
+    }
+    if (board.neuralNetwork != null) {
+      // The network has no cheaper estimate to fall back on.
+      return this.fitness(board);
+    }
+    int quick = this.fitnessQuick(board);
+    if (quick - LAZY_MARGIN >= beta || quick + LAZY_MARGIN <= alpha) {
+      return quick;
     }
+    fitness = quick + this.fitnessPositional(board);
+    this.evaluationHashTable.put(board.positionHash, fitness);
+    return fitness;
+  }
+
+  /**
+   * Returns a quick estimate of the static evaluation from the player to move's perspective. This
+   * is the tapered piece-square sum kept by the board, which covers material and piece placement,
+   * plus the bishop pair bonus. It costs only a few arithmetic operations and does not look at the
+   * pawn/king hash table.
+   * 
+   * @param board the board with which to perform a static evaluation
+   * @return the estimated static evaluation fitness score for the board
+   */
+  public int fitnessQuick(Board board) {
+    Color turnFlipped = Color.flip(board.turn);
+    int phase = Math.min(board.phase, PieceSquareTable.PHASE_MAX);
+    int fitness = (board.pieceSquareMidgame * phase
+        + board.pieceSquareEndgame * (PieceSquareTable.PHASE_MAX - phase))
+        / PieceSquareTable.PHASE_MAX;
+    if (board.turn == Color.BLACK) {
+      fitness = -fitness;
+    }
+
+    if (board.bitboards.get(board.turn).get(Piece.BISHOP).numOccupied() >= 2) {
+      fitness += this.parameters.bishopPair;
+    }
+    if (board.bitboards.get(turnFlipped).get(Piece.BISHOP).numOccupied() >= 2) {
+      fitness -= this.parameters.bishopPair;
+    }
+    return fitness;
+  }
+
+  /**
+   * Returns the part of the static evaluation not covered by {@link #fitnessQuick(Board)}: pawn
+   * structure, king shelter, rooks on open files, castling rights, and the terms computed from the
+   * attack maps in {@link #computeAttacks(Board)}. These are the terms that take most of the time
+   * to compute.
+   * 
+   * @param board the board with which to perform a static evaluation
+   * @return the remaining static evaluation fitness score for the board from the player to move's
+   *         perspective
+   */
+  private int fitnessPositional(Board board) {
+    Color turnFlipped = Color.flip(board.turn);
+    int fitness = 0;
+    float endgameFraction = this.endgameFraction(board);
 
-    float doubledPawnPenalty = 15 * (entry.numDoubledPawnsWhite - entry.numDoubledPawnsBlack);
-    float isolatedPawnPenalty = 15 * (entry.numIsolatedPawnsWhite - entry.numIsolatedPawnsBlack);
-    float passedPawnBonus = 30 * (entry.numPassedPawnsWhite - entry.numPassedPawnsBlack);
+    long entry = this.pawnKingHashTable.probe(board);
+    int doubledPawnPenalty =
+        this.parameters.doubledPawn * (PawnKingHashTable.numDoubledPawns(entry, Color.WHITE)
+            - PawnKingHashTable.numDoubledPawns(entry, Color.BLACK));
+    int isolatedPawnPenalty =
+        this.parameters.isolatedPawn * (PawnKingHashTable.numIsolatedPawns(entry, Color.WHITE)
+            - PawnKingHashTable.numIsolatedPawns(entry, Color.BLACK));
+    int passedPawnBonus =
+        this.parameters.passedPawn * (PawnKingHashTable.numPassedPawns(entry, Color.WHITE)
+            - PawnKingHashTable.numPassedPawns(entry, Color.BLACK));
     if (board.turn == Color.BLACK) {
       doubledPawnPenalty *= -1;
       isolatedPawnPenalty *= -1;
@@ -288,77 +373,170 @@ public class Evaluation {
     fitness -= isolatedPawnPenalty;
     fitness += passedPawnBonus;
 
-    // Since pawns can't be on the edge ranks.
-    for (int rank = 1; rank < 7; rank++) {
-      Bitboard rankBitboard = Bitboard.bitboardFromRank(rank);
-      for (int centrality = 0; centrality < 4; centrality++) {
-        Bitboard centralityBitboard =
-            Bitboard.bitboardFromFile(centrality).union(Bitboard.bitboardFromFile(8 - centrality));
-        float pawnFactor =
-            (1 - endgameFraction) * this.fitnessPawnTableOpening[rank][centrality];
-        pawnFactor += endgameFraction * this.fitnessPawnTableEndgame[rank][centrality];
-
-        int myPawnsOnRank = pawnBitboardRelativeToMe.intersection(rankBitboard)
-            .intersection(centralityBitboard).numOccupied();
-        int oppPawnsOnRank = pawnBitboardRelativeToOpp.intersection(rankBitboard)
-            .intersection(centralityBitboard).numOccupied();
-
-        fitness += pawnFactor * (myPawnsOnRank - oppPawnsOnRank);
-      }
-    }
-
-    fitness += this.fitnessKingSafety(board, board.turn, endgameFraction)
-        - this.fitnessKingSafety(board, turnFlipped, endgameFraction);
+    fitness += this.fitnessKingShelter(entry, board.turn, endgameFraction)
+        - this.fitnessKingShelter(entry, turnFlipped, endgameFraction);
     fitness += this.fitnessRookFiles(board, board.turn, endgameFraction)
         - this.fitnessRookFiles(board, turnFlipped, endgameFraction);
     fitness += this.fitnessCastleRights(board, board.turn, endgameFraction)
         - this.fitnessCastleRights(board, turnFlipped, endgameFraction);
-    
-    // The engine should try to checkmate as quickly as possible or delay being checkmated as long
-    // as possible. Do this by penalizing the winning side for a checkmate by the number of moves
-    // in the game.
-    if(board.bitboards.get(board.turn).get(Piece.KING).isEmpty()) {
-      fitness += board.fullMoveCounter * FITNESS_MOVE;
+
+    this.computeAttacks(board);
+    int us = board.turn.ordinal();
+    int them = turnFlipped.ordinal();
+    fitness += this.mobility[us] - this.mobility[them];
+    fitness += this.kingAttack[us] - this.kingAttack[them];
+    fitness += this.fitnessHangingPieces(board, board.turn)
+        - this.fitnessHangingPieces(board, turnFlipped);
+
+    return fitness;
+  }
+
+  /**
+   * Computes the attack maps for both players and the terms that come from the attacks of
+   * individual pieces. The squares each piece attacks are looked up once in the move generator's
+   * attack tables (see {@link Board#attackSquares(Color, Piece, int)}) without generating any
+   * moves, and are then used for three terms:
+   * 
+   * <p>Mobility: a knight, bishop, rook, or queen gets a bonus for each square it attacks that is
+   * neither occupied by its own pieces nor attacked by enemy pawns, relative to a typical number
+   * of such squares. Pieces with more safe squares are more active.
+   * 
+   * <p>King attacks: if at least two pieces attack the squares around the opponent's king, the
+   * attacker gets a bonus growing with the square of the attack's weight, as a coordinated attack
+   * is much more dangerous than a single piece. This fades out as the pieces are traded.
+   * 
+   * <p>The union of the attacks of all of a player's pieces, which
+   * {@link #fitnessHangingPieces(Board, Color)} uses to find undefended pieces.
+   * 
+   * <p>The results are stored in {@link #attacks}, {@link #mobility}, and {@link #kingAttack},
+   * indexed by color ordinal, so that evaluating allocates nothing.
+   * 
+   * @see <a href="http://chessprogramming.wikispaces.com/Mobility">Mobility</a>
+   * @see <a href="http://chessprogramming.wikispaces.com/King+Safety">King Safety</a>
+   * @param board the board for which to compute the attacks
+   */
+  private void computeAttacks(Board board) {
+    for (Color color : Evaluation.colors) {
+      long pawnAttacks = 0;
+      long pawns = board.bitboards.get(color).get(Piece.PAWN).getData();
+      while (pawns != 0) {
+        int index = Long.numberOfTrailingZeros(pawns);
+        pawns ^= 1L << index;
+        pawnAttacks |= board.attackSquares(color, Piece.PAWN, index);
+      }
+      this.pawnAttacks[color.ordinal()] = pawnAttacks;
     }
-    if(board.bitboards.get(Color.flip(board.turn)).get(Piece.KING).isEmpty()) {
-      fitness -= board.fullMoveCounter * FITNESS_MOVE;
+
+    for (Color color : Evaluation.colors) {
+      Color opponent = Color.flip(color);
+      long king = board.bitboards.get(color).get(Piece.KING).getData();
+      long attacks = this.pawnAttacks[color.ordinal()];
+      if (king != 0) {
+        attacks |= board.attackSquares(color, Piece.KING, Long.numberOfTrailingZeros(king));
+      }
+      long safeSquares =
+          ~board.playerBitboards.get(color).getData() & ~this.pawnAttacks[opponent.ordinal()];
+      long opponentKing = board.bitboards.get(opponent).get(Piece.KING).getData();
+      long kingZone = 0;
+      if (opponentKing != 0) {
+        kingZone = opponentKing
+            | board.attackSquares(opponent, Piece.KING, Long.numberOfTrailingZeros(opponentKing));
+      }
+
+      int mobility = 0;
+      int kingAttackers = 0;
+      int kingAttackWeight = 0;
+      for (Piece piece : Evaluation.mobilePieces) {
+        long pieces = board.bitboards.get(color).get(piece).getData();
+        while (pieces != 0) {
+          int index = Long.numberOfTrailingZeros(pieces);
+          pieces ^= 1L << index;
+          long pieceAttacks = board.attackSquares(color, piece, index);
+          attacks |= pieceAttacks;
+          int safeAttacks = Long.bitCount(pieceAttacks & safeSquares);
+          mobility += this.parameters.mobilityWeight[piece.ordinal()]
+              * (safeAttacks - this.parameters.mobilityBaseline[piece.ordinal()]);
+          long kingZoneAttacks = pieceAttacks & kingZone;
+          if (kingZoneAttacks != 0) {
+            kingAttackers++;
+            kingAttackWeight +=
+                this.parameters.kingAttackWeight[piece.ordinal()] + Long.bitCount(kingZoneAttacks);
+          }
+        }
+      }
+
+      int kingAttack = 0;
+      if (kingAttackers >= 2) {
+        kingAttack =
+            Math.min(kingAttackWeight * kingAttackWeight / 2, this.parameters.kingAttackMax);
+        kingAttack = kingAttack * Math.min(board.phase, PieceSquareTable.PHASE_MAX)
+            / PieceSquareTable.PHASE_MAX;
+      }
+      this.attacks[color.ordinal()] = attacks;
+      this.mobility[color.ordinal()] = mobility;
+      this.kingAttack[color.ordinal()] = kingAttack;
     }
+  }
 
-    return fitness;
+  /**
+   * Returns the given player's bonus for opposing pieces that it attacks and that are not
+   * defended. Pawns and the king are not counted. This must be called after
+   * {@link #computeAttacks(Board)}.
+   * 
+   * @param board the board to evaluate hanging pieces
+   * @param color the player attacking the hanging pieces
+   * @return the given player's hanging piece bonus in centipawns
+   */
+  private int fitnessHangingPieces(Board board, Color color) {
+    Color opponent = Color.flip(color);
+    long targets = board.playerBitboards.get(opponent).getData()
+        & ~board.bitboards.get(opponent).get(Piece.PAWN).getData()
+        & ~board.bitboards.get(opponent).get(Piece.KING).getData();
+    long hanging = targets & this.attacks[color.ordinal()] & ~this.attacks[opponent.ordinal()];
+    return this.parameters.hangingPiece * Long.bitCount(hanging);
   }
 
-  public static float FITNESS_LARGE = 1000000000;
-  // To checkmate as quickly as possible, put in a penalty for waiting.
-  public static float FITNESS_MOVE = 10000;
-  
-  private Map<Piece, Float> fitnessPiece = new HashMap<Piece, Float>();
-  private float fitnessStartNoKing = 0;
-
-  private float fitnessRookOpenFile = 50;
-  private float fitnessRookSemiOpenFile = 25;
-
-  private float fitnessCastleRightQueenside = 15;
-  private float fitnessCastleRightKingside = 30;
-
-  private float fitnessBishopPairBonus = 50;
-
-  // It goes as [rank][centrality]. rank goes from 0 to 7 and is from the
-  // perspective of that player. centrality goes from 0 (files a, h) to 3
-  // (files d, e).
-  private float[][] fitnessPawnTableOpening =
-      {{0, 0, 0, 0}, {90, 95, 105, 110}, {90, 95, 105, 115}, {90, 95, 110, 120},
-          {97, 103, 117, 127}, {106, 112, 125, 140}, {117, 122, 134, 159}, {0, 0, 0, 0}};
-  private float[][] fitnessPawnTableEndgame =
-      {{0, 0, 0, 0}, {120, 105, 95, 90}, {120, 105, 95, 90}, {125, 110, 100, 95},
-          {133, 117, 107, 100}, {145, 129, 116, 105}, {161, 146, 127, 110}, {0, 0, 0, 0}};
-  private float fitnessKingRankFactor = 75;
-  private float[] fitnessKingFile = {0, 0, -90, -180, -180, -90, 0, 0};
+  /**
+   * The score for capturing the opponent's king at the root, larger than any static evaluation.
+   * Scores are split into bands: mate scores lie within {@link #FITNESS_MATE_BOUND} of
+   * plus or minus this value, and everything closer to zero is a static evaluation in centipawns.
+   * It is well below the int range so that negating scores and adding per-ply offsets can never
+   * overflow.
+   */
+  public static int FITNESS_LARGE = 1000000000;
+
+  /**
+   * The amount a mate score shrinks by per ply from the root of the search to the king capture, so
+   * that the engine checkmates as quickly as possible.
+   */
+  public static int FITNESS_MOVE = 1;
+
+  /** Scores at least this large in magnitude are mate scores rather than static evaluations. */
+  public static int FITNESS_MATE_BOUND = FITNESS_LARGE - 1000 * FITNESS_MOVE;
+
+  /**
+   * The margin in centipawns by which the quick estimate must lie outside of the alpha-beta window
+   * for {@link #fitnessLazy(Board, int, int)} to skip the rest of the evaluation.
+   */
+  public static int LAZY_MARGIN = 400;
   
+  private EvaluationParameters parameters = null;
+
+  /** The pieces that are scored for mobility and king attacks. */
+  private static Piece[] mobilePieces = {Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN};
+
+  // Cached since Color.values() allocates a new array on every call.
+  private static Color[] colors = Color.values();
+
+  // The results of computeAttacks, indexed by color ordinal.
+  private long[] attacks = new long[2];
+  private long[] pawnAttacks = new long[2];
+  private int[] mobility = new int[2];
+  private int[] kingAttack = new int[2];
+
   private PawnKingHashTable pawnKingHashTable = null;
   private static int pawnKingTableSize = 64 * 1024;
-  
-  private Map<Color, Bitboard> pawnShieldQueenside;
-  private Map<Color, Bitboard> pawnShieldQueensideForward;
-  private Map<Color, Bitboard> pawnShieldKingside;
-  private Map<Color, Bitboard> pawnShieldKingsideForward;
+
+  private EvaluationHashTable evaluationHashTable = null;
+  private static int evaluationTableSize = 256 * 1024;
 }
@@ -0,0 +1,133 @@
+package tactician;
+
+/**
+ * This class is a hash table of static evaluation scores, keyed by the Zobrist hash of the whole
+ * position (see {@link Board#positionHash}). The search visits many positions more than once,
+ * through transpositions and through the re-searches of iterative deepening, and on a hit we can
+ * skip the king safety, rook file, and pawn structure calculations in
+ * {@link Evaluation#fitness(Board)} entirely.
+ *
+ * <p>The table is lossy: each position hash maps to a single slot, and a new score simply
+ * overwrites whatever was stored there before. The keys and scores are kept in two primitive
+ * arrays rather than as entry objects, and the number of slots is a power of two so that the slot
+ * of a position hash is found with a mask rather than a division. Since the slot only uses the low
+ * bits of the position hash, we store the full hash alongside the score to detect collisions.
+ *
+ * <p>We also count the probes and hits, so that the hit rate can be reported.
+ *
+ * @author Phil Leszczynski
+ */
+public class EvaluationHashTable {
+  /**
+   * Initializes an evaluation hash table with at least the given number of slots, rounded up to a
+   * power of two.
+   *
+   * @param size the minimum number of scores to store in the table
+   */
+  public EvaluationHashTable(int size) {
+    int capacity = Integer.highestOneBit(Math.max(size, 1));
+    if (capacity < size) {
+      capacity <<= 1;
+    }
+    this.mask = capacity - 1;
+    this.keys = new long[capacity];
+    this.scores = new int[capacity];
+    this.clear();
+  }
+
+  /**
+   * Returns the number of slots in the table.
+   *
+   * @return the number of slots, a power of two
+   */
+  public int size() {
+    return this.keys.length;
+  }
+
+  /**
+   * Retrieves a score from the table.
+   *
+   * @param positionHash the Zobrist hash of the position
+   * @return the score stored for the position, or {@link #NOT_FOUND} if it is not in the table
+   */
+  public int get(long positionHash) {
+    this.probes++;
+    int index = (int) positionHash & this.mask;
+    if (this.keys[index] != positionHash || this.scores[index] == NOT_FOUND) {
+      return NOT_FOUND;
+    }
+    this.hits++;
+    return this.scores[index];
+  }
+
+  /**
+   * Inserts a score into the table, overwriting any score previously stored in the same slot.
+   *
+   * @param positionHash the Zobrist hash of the position
+   * @param score the static evaluation of the position in centipawns
+   */
+  public void put(long positionHash, int score) {
+    int index = (int) positionHash & this.mask;
+    this.keys[index] = positionHash;
+    this.scores[index] = score;
+  }
+
+  /**
+   * Removes all scores from the table and resets the probe and hit counters. This must be called
+   * whenever the evaluation weights change, as the stored scores would then be stale.
+   */
+  public void clear() {
+    // A key of zero could match a real position hash, so empty slots get a score that is flagged as
+    // missing instead.
+    for (int i = 0; i < this.keys.length; i++) {
+      this.keys[i] = 0;
+      this.scores[i] = NOT_FOUND;
+    }
+    this.probes = 0;
+    this.hits = 0;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get(long)} since the table was last cleared.
+   *
+   * @return the number of probes
+   */
+  public long getProbes() {
+    return this.probes;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get(long)} that found a score since the table was last
+   * cleared.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the fraction of probes that found a score since the table was last cleared.
+   *
+   * @return the hit rate between 0 and 1, or 0 if there have been no probes
+   */
+  public double getHitRate() {
+    if (this.probes == 0) {
+      return 0;
+    }
+    return (double) this.hits / this.probes;
+  }
+
+  /**
+   * The value returned by {@link #get(long)} when the position is not in the table. No static
+   * evaluation comes anywhere near it.
+   */
+  public static int NOT_FOUND = Integer.MIN_VALUE;
+
+  private int mask;
+  private long[] keys;
+  private int[] scores;
+
+  private long probes = 0;
+  private long hits = 0;
+}
@@ -0,0 +1,374 @@
+package tactician;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds the weights used by the static evaluation: the material values, the constants
+ * the piece-square tables are built from, and the bonuses and penalties for pawn structure, king
+ * safety, rook placement, mobility, and so on. A default set of parameters is built by the
+ * constructor, and a set can be loaded from a file so that tuned or experimental weights can be
+ * swapped in without recompiling.
+ *
+ * <p>The parameters are plain public fields read directly by {@link Evaluation} and
+ * {@link PieceSquareTable}. Those that depend on the piece are kept in int arrays indexed by piece
+ * ordinal, so that the evaluation can look them up inside its loops over the pieces without any
+ * boxing or hashing.
+ *
+ * <p>For tuning, every parameter can also be read and written as a single flat vector through
+ * {@link #getValues()} and {@link #setValues(int[])}, with the matching names in {@link #NAMES}.
+ * The parameters file uses the same names: each line holds a name and an integer value separated
+ * by whitespace, and parameters missing from the file keep their default values.
+ *
+ * <p>A few terms stay fixed in code: the phase weights of the pieces (see
+ * {@link PieceSquareTable#phase(Piece)}), and the pawn shield penalties, which are cached in the
+ * {@link PawnKingHashTable} and so cannot change between evaluations.
+ *
+ * @author Phil Leszczynski
+ */
+public class EvaluationParameters {
+  /** Initializes a set of parameters to the default values. */
+  public EvaluationParameters() {
+    this.materialValue[Piece.KNIGHT.ordinal()] = 320;
+    this.materialValue[Piece.BISHOP.ordinal()] = 333;
+    this.materialValue[Piece.ROOK.ordinal()] = 510;
+    this.materialValue[Piece.QUEEN.ordinal()] = 880;
+    this.materialValue[Piece.KING.ordinal()] = 1000000;
+
+    this.mobilityWeight[Piece.KNIGHT.ordinal()] = 4;
+    this.mobilityWeight[Piece.BISHOP.ordinal()] = 5;
+    this.mobilityWeight[Piece.ROOK.ordinal()] = 3;
+    this.mobilityWeight[Piece.QUEEN.ordinal()] = 1;
+    this.mobilityBaseline[Piece.KNIGHT.ordinal()] = 4;
+    this.mobilityBaseline[Piece.BISHOP.ordinal()] = 6;
+    this.mobilityBaseline[Piece.ROOK.ordinal()] = 6;
+    this.mobilityBaseline[Piece.QUEEN.ordinal()] = 12;
+    this.kingAttackWeight[Piece.KNIGHT.ordinal()] = 2;
+    this.kingAttackWeight[Piece.BISHOP.ordinal()] = 2;
+    this.kingAttackWeight[Piece.ROOK.ordinal()] = 3;
+    this.kingAttackWeight[Piece.QUEEN.ordinal()] = 5;
+  }
+
+  /**
+   * Initializes a set of parameters to a copy of another set.
+   *
+   * @param other the parameters to copy
+   */
+  public EvaluationParameters(EvaluationParameters other) {
+    this.setValues(other.getValues());
+    this.materialValue[Piece.KING.ordinal()] = other.materialValue[Piece.KING.ordinal()];
+  }
+
+  /**
+   * Loads a set of parameters from a file. See the class definition for the file format.
+   *
+   * @param path the path of the parameters file
+   * @return the parameters in the file, with the default values for any that are missing
+   * @throws IOException if the file cannot be read, names an unknown parameter, or has a value
+   *         that is not an integer
+   */
+  public static EvaluationParameters load(String path) throws IOException {
+    EvaluationParameters parameters = new EvaluationParameters();
+    int[] values = parameters.getValues();
+    List<String> names = Arrays.asList(NAMES);
+    for (String line : Files.readAllLines(Paths.get(path))) {
+      String[] parts = line.trim().split("\\s+");
+      if (parts.length < 2) {
+        continue;
+      }
+      int index = names.indexOf(parts[0]);
+      if (index < 0) {
+        throw new IOException("Unknown evaluation parameter: " + parts[0]);
+      }
+      try {
+        values[index] = Integer.parseInt(parts[1]);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid value for evaluation parameter " + parts[0] + ": "
+            + parts[1]);
+      }
+    }
+    parameters.setValues(values);
+    return parameters;
+  }
+
+  /**
+   * Writes the parameters to a file in the format read by {@link #load(String)}.
+   *
+   * @param path the path of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void save(String path) throws IOException {
+    int[] values = this.getValues();
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(path)))) {
+      for (int i = 0; i < values.length; i++) {
+        writer.println(NAMES[i] + " " + values[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns all of the parameters as a flat vector, in the order of {@link #NAMES}. This lets
+   * tools such as {@link TexelTuner} adjust the parameters without knowing what they mean.
+   *
+   * @return a new array holding the current parameters
+   */
+  public int[] getValues() {
+    int[] values = new int[NAMES.length];
+    this.visit(new Cursor(values, false, null));
+    return values;
+  }
+
+  /**
+   * Sets all of the parameters from a flat vector in the order of {@link #NAMES}.
+   *
+   * @param values the new parameters
+   */
+  public void setValues(int[] values) {
+    if (values.length != NAMES.length) {
+      throw new IllegalArgumentException("Expected " + NAMES.length + " parameters but got "
+          + values.length);
+    }
+    this.visit(new Cursor(values, true, null));
+  }
+
+  /**
+   * Passes every parameter through a cursor in a fixed order, replacing each parameter with the
+   * cursor's result. This single method defines the order of {@link #NAMES},
+   * {@link #getValues()}, and {@link #setValues(int[])}, so that they cannot disagree.
+   *
+   * @param cursor the cursor reading or writing the flat vector
+   */
+  private void visit(Cursor cursor) {
+    this.doubledPawn = cursor.next("DoubledPawn", this.doubledPawn);
+    this.isolatedPawn = cursor.next("IsolatedPawn", this.isolatedPawn);
+    this.passedPawn = cursor.next("PassedPawn", this.passedPawn);
+    this.rookOpenFile = cursor.next("RookOpenFile", this.rookOpenFile);
+    this.rookSemiOpenFile = cursor.next("RookSemiOpenFile", this.rookSemiOpenFile);
+    this.castleRightQueenside = cursor.next("CastleRightQueenside", this.castleRightQueenside);
+    this.castleRightKingside = cursor.next("CastleRightKingside", this.castleRightKingside);
+    this.castleShieldQueenside = cursor.next("CastleShieldQueenside", this.castleShieldQueenside);
+    this.castleShieldKingside = cursor.next("CastleShieldKingside", this.castleShieldKingside);
+    this.kingOpenFile = cursor.next("KingOpenFile", this.kingOpenFile);
+    this.bishopPair = cursor.next("BishopPair", this.bishopPair);
+    this.hangingPiece = cursor.next("HangingPiece", this.hangingPiece);
+    this.kingAttackMax = cursor.next("KingAttackMax", this.kingAttackMax);
+    for (Piece piece : materialPieces) {
+      int i = piece.ordinal();
+      this.materialValue[i] = cursor.next("Material" + pieceName(piece), this.materialValue[i]);
+    }
+    for (Piece piece : mobilePieces) {
+      int i = piece.ordinal();
+      this.mobilityWeight[i] = cursor.next("Mobility" + pieceName(piece), this.mobilityWeight[i]);
+    }
+    for (Piece piece : mobilePieces) {
+      int i = piece.ordinal();
+      this.mobilityBaseline[i] =
+          cursor.next("MobilityBaseline" + pieceName(piece), this.mobilityBaseline[i]);
+    }
+    for (Piece piece : mobilePieces) {
+      int i = piece.ordinal();
+      this.kingAttackWeight[i] =
+          cursor.next("KingAttack" + pieceName(piece), this.kingAttackWeight[i]);
+    }
+    this.kingRankFactor = cursor.next("KingRank", this.kingRankFactor);
+    for (int file = 0; file < 8; file++) {
+      this.kingFile[file] =
+          cursor.next("KingFile" + (char) ('A' + file), this.kingFile[file]);
+    }
+    // The pawn tables are named after the square on the queenside from white's perspective, e.g.
+    // PawnMidgameC4 also applies to f4 for white and to c5 and f5 for black. Pawns never stand on
+    // the first or last rank so those entries are left out.
+    for (int rank = 1; rank < 7; rank++) {
+      for (int centrality = 0; centrality < 4; centrality++) {
+        this.pawnTableMidgame[rank][centrality] = cursor.next(
+            "PawnMidgame" + squareName(rank, centrality), this.pawnTableMidgame[rank][centrality]);
+      }
+    }
+    for (int rank = 1; rank < 7; rank++) {
+      for (int centrality = 0; centrality < 4; centrality++) {
+        this.pawnTableEndgame[rank][centrality] = cursor.next(
+            "PawnEndgame" + squareName(rank, centrality), this.pawnTableEndgame[rank][centrality]);
+      }
+    }
+  }
+
+  /**
+   * Returns the name of a piece as used in the parameter names, e.g. "Knight".
+   *
+   * @param piece the type of piece
+   * @return the capitalized name of the piece
+   */
+  private static String pieceName(Piece piece) {
+    String name = piece.name();
+    return name.charAt(0) + name.substring(1).toLowerCase();
+  }
+
+  /**
+   * Returns the name of the queenside square with the given rank and centrality, e.g. "C4".
+   *
+   * @param rank the rank from 0 to 7
+   * @param centrality the centrality from 0 (the a-file) to 3 (the d-file)
+   * @return the name of the square
+   */
+  private static String squareName(int rank, int centrality) {
+    return "" + (char) ('A' + centrality) + (rank + 1);
+  }
+
+  /**
+   * Walks the flat parameter vector alongside {@link #visit(Cursor)}, either copying each
+   * parameter into the vector, copying each value from the vector into the parameter, or only
+   * collecting the names.
+   */
+  private static class Cursor {
+    /**
+     * Initializes a cursor at the start of the vector.
+     *
+     * @param values the flat vector, or null to only collect the names
+     * @param store true to set the parameters from the vector, false to fill in the vector
+     * @param names the list to add each parameter's name to, or null to skip the names
+     */
+    private Cursor(int[] values, boolean store, List<String> names) {
+      this.values = values;
+      this.store = store;
+      this.names = names;
+    }
+
+    /**
+     * Moves past the next parameter.
+     *
+     * @param name the name of the parameter
+     * @param current the current value of the parameter
+     * @return the new value of the parameter
+     */
+    private int next(String name, int current) {
+      if (this.names != null) {
+        this.names.add(name);
+      }
+      int index = this.index++;
+      if (this.values == null) {
+        return current;
+      }
+      if (this.store) {
+        return this.values[index];
+      }
+      this.values[index] = current;
+      return current;
+    }
+
+    private int[] values;
+    private boolean store;
+    private List<String> names;
+    private int index = 0;
+  }
+
+  /**
+   * The names of the parameters, in the order used by {@link #getValues()},
+   * {@link #setValues(int[])}, and the parameters file.
+   */
+  public static String[] NAMES;
+
+  /** The penalty for each doubled pawn. */
+  public int doubledPawn = 15;
+
+  /** The penalty for each isolated pawn. */
+  public int isolatedPawn = 15;
+
+  /** The bonus for each passed pawn. */
+  public int passedPawn = 30;
+
+  /** The bonus for a rook on a file with no pawns. */
+  public int rookOpenFile = 50;
+
+  /** The bonus for a rook on a file with only opposing pawns. */
+  public int rookSemiOpenFile = 25;
+
+  /** The bonus for the right to castle queenside, fading out towards the endgame. */
+  public int castleRightQueenside = 15;
+
+  /** The bonus for the right to castle kingside, fading out towards the endgame. */
+  public int castleRightKingside = 30;
+
+  /** The penalty for each pawn missing from the queenside pawn shield while castling is open. */
+  public int castleShieldQueenside = 10;
+
+  /** The penalty for each pawn missing from the kingside pawn shield while castling is open. */
+  public int castleShieldKingside = 25;
+
+  /** The penalty for a king on a file with no friendly pawns, fading out towards the endgame. */
+  public int kingOpenFile = 150;
+
+  /** The bonus for having two or more bishops. */
+  public int bishopPair = 50;
+
+  /** The bonus for each undefended opposing piece that is attacked. */
+  public int hangingPiece = 30;
+
+  /** The largest bonus for an attack on the opposing king. */
+  public int kingAttackMax = 200;
+
+  /**
+   * The material value of each piece in centipawns, indexed by piece ordinal. The king's value is
+   * not a tunable parameter; it only needs to dwarf everything else. The pawn has no value here, as
+   * the pawn tables below already include its material value.
+   */
+  public int[] materialValue = new int[Piece.values().length];
+
+  /** The mobility bonus per safe square, indexed by piece ordinal. */
+  public int[] mobilityWeight = new int[Piece.values().length];
+
+  /** The typical number of safe squares, which scores no mobility bonus, by piece ordinal. */
+  public int[] mobilityBaseline = new int[Piece.values().length];
+
+  /** The weight of a piece attacking the squares around the king, indexed by piece ordinal. */
+  public int[] kingAttackWeight = new int[Piece.values().length];
+
+  /** The king placement penalty per rank advanced from the home rank. */
+  public int kingRankFactor = 75;
+
+  /** The king placement score by file, from the a-file to the h-file. */
+  public int[] kingFile = {0, 0, -90, -180, -180, -90, 0, 0};
+
+  /**
+   * The middlegame value of a pawn including its material value, as [rank][centrality]. The rank
+   * goes from 0 to 7 and is from the perspective of the pawn's owner. The centrality goes from 0
+   * (files a, h) to 3 (files d, e).
+   */
+  public int[][] pawnTableMidgame =
+      {{0, 0, 0, 0}, {90, 95, 105, 110}, {90, 95, 105, 115}, {90, 95, 110, 120},
+          {97, 103, 117, 127}, {106, 112, 125, 140}, {117, 122, 134, 159}, {0, 0, 0, 0}};
+
+  /** The endgame value of a pawn including its material value, laid out as for the middlegame. */
+  public int[][] pawnTableEndgame =
+      {{0, 0, 0, 0}, {120, 105, 95, 90}, {120, 105, 95, 90}, {125, 110, 100, 95},
+          {133, 117, 107, 100}, {145, 129, 116, 105}, {161, 146, 127, 110}, {0, 0, 0, 0}};
+
+  /**
+   * The pieces whose material value is a parameter. The pawn is left out, as its value comes from
+   * the pawn tables.
+   */
+  private static Piece[] materialPieces = {Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN};
+
+  /** The pieces that are scored for mobility and king attacks. */
+  private static Piece[] mobilePieces = {Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN};
+
+  static {
+    List<String> names = new ArrayList<String>();
+    new EvaluationParameters(names);
+    NAMES = names.toArray(new String[names.size()]);
+  }
+
+  /**
+   * Initializes a set of default parameters only to collect the parameter names.
+   *
+   * @param names the list to add the parameter names to
+   */
+  private EvaluationParameters(List<String> names) {
+    this();
+    this.visit(new Cursor(null, false, names));
+  }
+}
@@ -151,6 +151,20 @@ public class LegalMoveGenerator {
       this.attackSquaresPawnWhite[i] =
           this.attackSquaresPawnCaptureWhite[i] | this.attackSquaresPawnMoveWhite[i];
     }
+    for (int i = 0; i < 64; i++) {
+      long capturesWhite = this.attackSquaresPawnCaptureWhite[i];
+      while (capturesWhite != 0) {
+        int captureIndex = Long.numberOfTrailingZeros(capturesWhite);
+        capturesWhite ^= 1L << captureIndex;
+        this.attackersPawnWhite[captureIndex] |= 1L << i;
+      }
+      long capturesBlack = this.attackSquaresPawnCaptureBlack[i];
+      while (capturesBlack != 0) {
+        int captureIndex = Long.numberOfTrailingZeros(capturesBlack);
+        capturesBlack ^= 1L << captureIndex;
+        this.attackersPawnBlack[captureIndex] |= 1L << i;
+      }
+    }
   }
 
   /**
@@ -327,16 +341,276 @@ public class LegalMoveGenerator {
     return true;
   }
 
+  /**
+   * Returns the squares attacked by a long range piece along a single line through its square,
+   * for example the a1-h8 diagonal for a bishop. The line is cut off at the first occupied square
+   * in each direction; that square is itself included since the piece may capture there.
+   * 
+   * @param attackSquaresTable the table containing the unobstructed attack squares along a single
+   *        line, for example {@link #attackSquaresA1H8}
+   * @param index the index of the square the piece is on, 0-63
+   * @param occupied the 64-bit long mask of occupied squares that block the piece
+   * @return the 64-bit long mask of squares attacked along the line
+   */
+  private static long attackSquaresLongRange(long[] attackSquaresTable, int index,
+      long occupied) {
+    long mover = 1L << index;
+    long attackSquares = attackSquaresTable[index];
+    long incidentSquares = attackSquares & occupied;
+    long incidentSquaresBefore = incidentSquares & (mover - 1L);
+    long incidentSquaresAfter = index == 63 ? 0L : incidentSquares & ~(mover + mover - 1L);
+    int leadingZerosBefore = Long.numberOfLeadingZeros(incidentSquaresBefore);
+    long incidentMaskBefore =
+        leadingZerosBefore == 64 ? ~0L : ~((1L << (63 - leadingZerosBefore)) - 1L);
+    int trailingZerosAfter = Long.numberOfTrailingZeros(incidentSquaresAfter);
+    long incidentMaskAfter = (trailingZerosAfter == 0 || trailingZerosAfter >= 63) ? ~0L
+        : (1L << (trailingZerosAfter + 1)) - 1L;
+    return attackSquares & incidentMaskBefore & incidentMaskAfter;
+  }
+
+  /**
+   * Returns the squares attacked by a bishop on a given square, stopping at the first occupied
+   * square along each diagonal.
+   * 
+   * @param index the index of the square the bishop is on, 0-63
+   * @param occupied the 64-bit long mask of occupied squares that block the bishop
+   * @return the 64-bit long mask of squares attacked by the bishop
+   */
+  public long blockedAttackSquaresBishop(int index, long occupied) {
+    return LegalMoveGenerator.attackSquaresLongRange(this.attackSquaresA1H8, index, occupied)
+        | LegalMoveGenerator.attackSquaresLongRange(this.attackSquaresA8H1, index, occupied);
+  }
+
+  /**
+   * Returns the squares attacked by a rook on a given square, stopping at the first occupied
+   * square along each rank and file.
+   * 
+   * @param index the index of the square the rook is on, 0-63
+   * @param occupied the 64-bit long mask of occupied squares that block the rook
+   * @return the 64-bit long mask of squares attacked by the rook
+   */
+  public long blockedAttackSquaresRook(int index, long occupied) {
+    return LegalMoveGenerator.attackSquaresLongRange(this.attackSquaresHorizontal, index,
+        occupied)
+        | LegalMoveGenerator.attackSquaresLongRange(this.attackSquaresVertical, index, occupied);
+  }
+
+  /**
+   * Returns the squares attacked by a piece on a given square, looking the squares up in the
+   * attack tables without generating any moves. A pawn attacks only the squares it could capture
+   * on, and long range pieces are blocked by the occupied squares. The squares of the player's own
+   * pieces are included, as the piece defends them.
+   * 
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the square the piece is on, 0-63
+   * @param occupied the 64-bit long mask of occupied squares that block long range pieces
+   * @return the 64-bit long mask of squares attacked by the piece
+   */
+  public long attackSquares(Color color, Piece piece, int index, long occupied) {
+    switch (piece) {
+      case PAWN:
+        return color == Color.WHITE ? this.attackSquaresPawnCaptureWhite[index]
+            : this.attackSquaresPawnCaptureBlack[index];
+      case KNIGHT:
+        return this.attackSquaresKnight[index];
+      case BISHOP:
+        return this.blockedAttackSquaresBishop(index, occupied);
+      case ROOK:
+        return this.blockedAttackSquaresRook(index, occupied);
+      case QUEEN:
+        return this.blockedAttackSquaresBishop(index, occupied)
+            | this.blockedAttackSquaresRook(index, occupied);
+      default:
+        return this.attackSquaresKing[index];
+    }
+  }
+
+  /**
+   * Returns the pieces of both colors that attack a given square. Only the pieces on the occupied
+   * squares are considered, and long range pieces are blocked by the occupied squares. Passing in
+   * an occupancy with some pieces removed therefore reveals the x-ray attackers behind them, which
+   * is how {@link #see(Board, Move)} resolves batteries of rooks and queens.
+   * 
+   * @param board the board containing the position
+   * @param index the index of the attacked square, 0-63
+   * @param occupied the 64-bit long mask of squares that are still occupied
+   * @return the 64-bit long mask of the attacking pieces' squares
+   */
+  public long attackersTo(Board board, int index, long occupied) {
+    Map<Piece, Bitboard> white = board.bitboards.get(Color.WHITE);
+    Map<Piece, Bitboard> black = board.bitboards.get(Color.BLACK);
+    long diagonalPieces = white.get(Piece.BISHOP).getData() | white.get(Piece.QUEEN).getData()
+        | black.get(Piece.BISHOP).getData() | black.get(Piece.QUEEN).getData();
+    long straightPieces = white.get(Piece.ROOK).getData() | white.get(Piece.QUEEN).getData()
+        | black.get(Piece.ROOK).getData() | black.get(Piece.QUEEN).getData();
+    long knights = white.get(Piece.KNIGHT).getData() | black.get(Piece.KNIGHT).getData();
+    long kings = white.get(Piece.KING).getData() | black.get(Piece.KING).getData();
+    long result = 0;
+    result |= this.attackersPawnWhite[index] & white.get(Piece.PAWN).getData();
+    result |= this.attackersPawnBlack[index] & black.get(Piece.PAWN).getData();
+    result |= this.attackSquaresKnight[index] & knights;
+    result |= this.attackSquaresKing[index] & kings;
+    result |= this.blockedAttackSquaresBishop(index, occupied) & diagonalPieces;
+    result |= this.blockedAttackSquaresRook(index, occupied) & straightPieces;
+    return result & occupied;
+  }
+
+  /**
+   * Performs a static exchange evaluation of a move. This is the material balance in centipawns for
+   * the moving player after all the captures and recaptures on the destination square have been
+   * played out, where each side always recaptures with its least valuable piece and may stop
+   * capturing whenever continuing would lose material. No other moves are considered, so this is
+   * much cheaper than a search. It is typically used to find captures that lose material, such as
+   * a queen capturing a pawn defended by another pawn.
+   * 
+   * <p>We use the swap algorithm: the speculative gain of each successive capture is recorded in a
+   * list and then the list is resolved backwards with a negamax. Once a piece has captured it is
+   * removed from the occupied squares so that any rook, bishop, or queen behind it (an x-ray
+   * attacker) joins the exchange. A king may only recapture if the opponent has no attackers left.
+   * 
+   * @see <a href="http://chessprogramming.wikispaces.com/Static+Exchange+Evaluation">Static
+   *      Exchange Evaluation</a>
+   * @param board the board containing the position
+   * @param move the pseudo-legal move to evaluate, typically a capture
+   * @return the material gained by the moving player in centipawns, negative if material is lost
+   */
+  public int see(Board board, Move move) {
+    Color side = board.turn;
+    long occupied = board.allPieces.getData();
+    long destinationMask = 1L << move.destination;
+    Piece attacker = board.pieceOnSquare(side, move.source);
+    if (attacker == null) {
+      return 0;
+    }
+    // The gain list can be at most one entry longer than the number of pieces on the board.
+    int[] gain = new int[33];
+    gain[0] = seeCaptureGain(board, move, attacker);
+    if (attacker == Piece.PAWN && destinationMask == board.enPassantTarget) {
+      occupied ^= side == Color.WHITE ? destinationMask >>> 8 : destinationMask << 8;
+    }
+    int attackerValue = seeAttackerValue(move, attacker);
+
+    long fromMask = 1L << move.source;
+    int depth = 0;
+    do {
+      depth++;
+      // The speculative gain for the side to recapture, should it take the piece that just moved.
+      gain[depth] = attackerValue - gain[depth - 1];
+      occupied ^= fromMask;
+      long attackers = this.attackersTo(board, move.destination, occupied);
+      side = Color.flip(side);
+      long sideAttackers = attackers & board.playerBitboards.get(side).getData();
+      fromMask = 0;
+      for (Piece piece : LegalMoveGenerator.piecesByValue) {
+        long pieceAttackers = sideAttackers & board.bitboards.get(side).get(piece).getData();
+        if (pieceAttackers != 0) {
+          fromMask = pieceAttackers & -pieceAttackers;
+          attackerValue = LegalMoveGenerator.seeValues[piece.ordinal()];
+          if (piece == Piece.KING
+              && (attackers & board.playerBitboards.get(Color.flip(side)).getData()) != 0) {
+            // The king cannot recapture onto a defended square.
+            fromMask = 0;
+          }
+          break;
+        }
+      }
+    } while (fromMask != 0);
+    while (--depth > 0) {
+      gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+    }
+    return gain[0];
+  }
+
+  /**
+   * Returns the value of a piece in centipawns as used by {@link #see(Board, Move)}.
+   * 
+   * @param piece the type of piece
+   * @return the value of the piece in centipawns
+   */
+  public static int seeValue(Piece piece) {
+    return LegalMoveGenerator.seeValues[piece.ordinal()];
+  }
+
+  /**
+   * Returns whether the static exchange evaluation of a move reaches a given threshold. See
+   * {@link #see(Board, Move)} for details. For example a threshold of 0 tests whether a capture
+   * does not lose material.
+   * 
+   * @param board the board containing the position
+   * @param move the pseudo-legal move to evaluate, typically a capture
+   * @param threshold the minimum material gain in centipawns
+   * @return true if the static exchange evaluation is at least the threshold, false otherwise
+   */
+  public boolean seeGreaterOrEqual(Board board, Move move, int threshold) {
+    Piece attacker = board.pieceOnSquare(board.turn, move.source);
+    if (attacker == null) {
+      return 0 >= threshold;
+    }
+    // The opponent may stop recapturing at any point, so the exchange can gain no more than the
+    // first capture. And since we may stop after the first recapture, it loses at most the piece
+    // that moved. Most captures are decided by one of these bounds without playing out the
+    // exchange.
+    int captureGain = seeCaptureGain(board, move, attacker);
+    if (captureGain < threshold) {
+      return false;
+    }
+    if (captureGain - seeAttackerValue(move, attacker) >= threshold) {
+      return true;
+    }
+    return this.see(board, move) >= threshold;
+  }
+
+  /**
+   * Returns the material gained by a move before any recapture: the value of the captured piece,
+   * including a pawn captured en passant, plus the gain from a promotion.
+   * 
+   * @param board the board containing the position
+   * @param move the pseudo-legal move to evaluate
+   * @param attacker the type of the piece making the move
+   * @return the material gained by the move in centipawns
+   */
+  private static int seeCaptureGain(Board board, Move move, Piece attacker) {
+    int gain = 0;
+    Piece captured = board.pieceOnSquare(Color.flip(board.turn), move.destination);
+    if (captured != null) {
+      gain = LegalMoveGenerator.seeValues[captured.ordinal()];
+    } else if (attacker == Piece.PAWN && (1L << move.destination) == board.enPassantTarget) {
+      gain = LegalMoveGenerator.seeValues[Piece.PAWN.ordinal()];
+    }
+    if (move.promoteTo != null) {
+      gain += LegalMoveGenerator.seeValues[move.promoteTo.ordinal()]
+          - LegalMoveGenerator.seeValues[Piece.PAWN.ordinal()];
+    }
+    return gain;
+  }
+
+  /**
+   * Returns the value of the piece left on the destination square after a move, which is what
+   * the opponent wins by recapturing it.
+   * 
+   * @param move the pseudo-legal move to evaluate
+   * @param attacker the type of the piece making the move
+   * @return the value of the piece in centipawns
+   */
+  private static int seeAttackerValue(Move move, Piece attacker) {
+    if (move.promoteTo != null) {
+      return LegalMoveGenerator.seeValues[move.promoteTo.ordinal()];
+    }
+    return LegalMoveGenerator.seeValues[attacker.ordinal()];
+  }
+
   /**
    * Appends the pseudo-legal pawn moves for a given board. Optionally includes only the moves that
-   * make a capture, including en passant.
+   * make a capture, including en passant, or only the moves that do not.
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForPawn(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForPawn(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     long movers = board.bitboards.get(board.turn).get(Piece.PAWN).getData();
     long oppPieces = board.playerBitboards.get(Color.flip(board.turn)).getData();
     long[] attackSquaresMoveTable = board.turn == Color.WHITE ? this.attackSquaresPawnMoveWhite
@@ -359,7 +633,7 @@ public class LegalMoveGenerator {
         moveBlockers |= (moveBlockers & 0x0000FF0000000000L) >>> 8;
       }
 
-      if (!capturesOnly) {
+      if (includeQuiets) {
         long attackSquaresMove = attackSquaresMoveTable[moverIndex];
         attackSquaresMove &= ~moveBlockers;
         while (attackSquaresMove != 0) {
@@ -377,6 +651,9 @@ public class LegalMoveGenerator {
         }
       }
 
+      if (!includeCaptures) {
+        continue;
+      }
       long attackSquaresCapture = attackSquaresCaptureTable[moverIndex];
       attackSquaresCapture &= (oppPieces | board.enPassantTarget);
       while (attackSquaresCapture != 0) {
@@ -404,29 +681,19 @@ public class LegalMoveGenerator {
    * @param attackSquaresTable the table containing the attack squares for the given piece, or where
    *        the piece can move to from a given board position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
   private void appendMovesForLongRangePiece(Board board, Piece piece, long[] attackSquaresTable,
-      ArrayList<Move> moves, boolean capturesOnly) {
+      ArrayList<Move> moves, boolean includeCaptures, boolean includeQuiets) {
     long movers = board.bitboards.get(board.turn).get(piece).getData();
     long myPieces = board.playerBitboards.get(board.turn).getData();
     while (movers != 0) {
       int moverIndex = Long.numberOfTrailingZeros(movers);
       long mover = 1L << moverIndex;
       movers ^= mover;
-      long attackSquares = attackSquaresTable[moverIndex];
-      long incidentSquares = attackSquares & board.allPieces.getData();
-      long incidentSquaresBefore = incidentSquares & (mover - 1L);
-      long incidentSquaresAfter = moverIndex == 63 ? 0L : incidentSquares & ~(mover + mover - 1L);
-      int leadingZerosBefore = Long.numberOfLeadingZeros(incidentSquaresBefore);
-      long incidentMaskBefore =
-          leadingZerosBefore == 64 ? ~0L : ~((1L << (63 - leadingZerosBefore)) - 1L);
-      int trailingZerosAfter = Long.numberOfTrailingZeros(incidentSquaresAfter);
-      long incidentMaskAfter = (trailingZerosAfter == 0 || trailingZerosAfter >= 63) ? ~0L
-          : (1L << (trailingZerosAfter + 1)) - 1L;
-      attackSquares &= incidentMaskBefore;
-      attackSquares &= incidentMaskAfter;
+      long attackSquares = LegalMoveGenerator.attackSquaresLongRange(attackSquaresTable,
+          moverIndex, board.allPieces.getData());
       while (attackSquares != 0) {
         int attackSquareIndex = Long.numberOfTrailingZeros(attackSquares);
         long attackSquare = 1L << attackSquareIndex;
@@ -434,7 +701,8 @@ public class LegalMoveGenerator {
         if ((attackSquare & myPieces) != 0) {
           continue;
         }
-        if (capturesOnly && !board.allPieces.intersects(attackSquare)) {
+        boolean isCapture = board.allPieces.intersects(attackSquare);
+        if ((isCapture && !includeCaptures) || (!isCapture && !includeQuiets)) {
           continue;
         }
         moves.add(new Move(moverIndex, attackSquareIndex));
@@ -447,14 +715,15 @@ public class LegalMoveGenerator {
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForBishop(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForBishop(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     this.appendMovesForLongRangePiece(board, Piece.BISHOP, this.attackSquaresA1H8, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
     this.appendMovesForLongRangePiece(board, Piece.BISHOP, this.attackSquaresA8H1, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
   }
 
   /**
@@ -462,18 +731,19 @@ public class LegalMoveGenerator {
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForQueen(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForQueen(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     this.appendMovesForLongRangePiece(board, Piece.QUEEN, this.attackSquaresA1H8, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
     this.appendMovesForLongRangePiece(board, Piece.QUEEN, this.attackSquaresA8H1, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
     this.appendMovesForLongRangePiece(board, Piece.QUEEN, this.attackSquaresHorizontal, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
     this.appendMovesForLongRangePiece(board, Piece.QUEEN, this.attackSquaresVertical, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
   }
 
   /**
@@ -481,31 +751,32 @@ public class LegalMoveGenerator {
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForRook(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForRook(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     this.appendMovesForLongRangePiece(board, Piece.ROOK, this.attackSquaresHorizontal, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
     this.appendMovesForLongRangePiece(board, Piece.ROOK, this.attackSquaresVertical, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
   }
 
   /**
    * Appends the pseudo-legal moves for a short range piece for a given board. The short range
    * pieces are the king and knight. Pawns are handled separately in
-   * {@link #appendMovesForPawn(Board, ArrayList, boolean)}.
+   * {@link #appendMovesForPawn(Board, ArrayList, boolean, boolean)}.
    * 
    * @param board the board containing the position
    * @param piece the type of piece to generate moves for
    * @param attackSquaresTable the table containing the attack squares for the given piece, or where
    *        the piece can move to from a given board position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
   private void appendMovesForShortRangePiece(Board board, Piece piece, long[] attackSquaresTable,
-      ArrayList<Move> moves, boolean capturesOnly) {
+      ArrayList<Move> moves, boolean includeCaptures, boolean includeQuiets) {
     long movers = board.bitboards.get(board.turn).get(piece).getData();
     while (movers != 0) {
       int moverIndex = Long.numberOfTrailingZeros(movers);
@@ -517,7 +788,8 @@ public class LegalMoveGenerator {
         int attackSquareIndex = Long.numberOfTrailingZeros(attackSquares);
         long attackSquare = 1L << attackSquareIndex;
         attackSquares ^= attackSquare;
-        if (capturesOnly && !board.allPieces.intersects(attackSquare)) {
+        boolean isCapture = board.allPieces.intersects(attackSquare);
+        if ((isCapture && !includeCaptures) || (!isCapture && !includeQuiets)) {
           continue;
         }
         moves.add(new Move(moverIndex, attackSquareIndex));
@@ -530,12 +802,13 @@ public class LegalMoveGenerator {
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForKing(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForKing(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     this.appendMovesForShortRangePiece(board, Piece.KING, this.attackSquaresKing, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
   }
 
   /**
@@ -543,12 +816,13 @@ public class LegalMoveGenerator {
    * 
    * @param board the board containing the position
    * @param moves an ArrayList of pseudo-legal moves to which we will append
-   * @param capturesOnly if true will include only captures, otherwise will contain all pseudo-legal
-   *        moves
+   * @param includeCaptures whether to include the moves that capture, including en passant
+   * @param includeQuiets whether to include the moves that do not capture
    */
-  private void appendMovesForKnight(Board board, ArrayList<Move> moves, boolean capturesOnly) {
+  private void appendMovesForKnight(Board board, ArrayList<Move> moves, boolean includeCaptures,
+      boolean includeQuiets) {
     this.appendMovesForShortRangePiece(board, Piece.KNIGHT, this.attackSquaresKnight, moves,
-        capturesOnly);
+        includeCaptures, includeQuiets);
   }
 
   /**
@@ -615,33 +889,24 @@ public class LegalMoveGenerator {
   }
 
   /**
-   * Given a board determines whether the player to move is in check.
+   * Given a board determines whether the player to move is in check. Rather than generating the
+   * opponent's captures we look up the attackers of the king's square directly through
+   * {@link #attackersTo(Board, int, long)}, which is cheap enough to call at every search node.
    * 
    * @param board the board containing the position for which to test for check
    * @return true if the player to move is in check, false otherwise
    */
   public boolean isInCheck(Board board) {
-    ArrayList<Move> legalMovesFast = new ArrayList<Move>();
-    Bitboard myKings = board.bitboards.get(board.turn).get(Piece.KING);
-
-    // Don't return before restoring the turn.
-    board.turn = Color.flip(board.turn);
-
-    this.appendMovesForQueen(board, legalMovesFast, true);
-    this.appendMovesForRook(board, legalMovesFast, true);
-    this.appendMovesForBishop(board, legalMovesFast, true);
-    this.appendMovesForKnight(board, legalMovesFast, true);
-    this.appendMovesForPawn(board, legalMovesFast, true);
-    this.appendMovesForKing(board, legalMovesFast, true);
-
-    for (Move move : legalMovesFast) {
-      if (myKings.intersects(1L << move.destination)) {
-        board.turn = Color.flip(board.turn);
+    long myKings = board.bitboards.get(board.turn).get(Piece.KING).getData();
+    long oppPieces = board.playerBitboards.get(Color.flip(board.turn)).getData();
+    long occupied = board.allPieces.getData();
+    while (myKings != 0) {
+      int kingIndex = Long.numberOfTrailingZeros(myKings);
+      myKings ^= 1L << kingIndex;
+      if ((this.attackersTo(board, kingIndex, occupied) & oppPieces) != 0) {
         return true;
       }
     }
-
-    board.turn = Color.flip(board.turn);
     return false;
   }
 
@@ -659,12 +924,12 @@ public class LegalMoveGenerator {
   public ArrayList<Move> legalMovesFast(Board board, boolean capturesOnly) {
     ArrayList<Move> legalMovesFast = new ArrayList<Move>();
 
-    this.appendMovesForPawn(board, legalMovesFast, capturesOnly);
-    this.appendMovesForKnight(board, legalMovesFast, capturesOnly);
-    this.appendMovesForBishop(board, legalMovesFast, capturesOnly);
-    this.appendMovesForRook(board, legalMovesFast, capturesOnly);
-    this.appendMovesForQueen(board, legalMovesFast, capturesOnly);
-    this.appendMovesForKing(board, legalMovesFast, capturesOnly);
+    this.appendMovesForPawn(board, legalMovesFast, true, !capturesOnly);
+    this.appendMovesForKnight(board, legalMovesFast, true, !capturesOnly);
+    this.appendMovesForBishop(board, legalMovesFast, true, !capturesOnly);
+    this.appendMovesForRook(board, legalMovesFast, true, !capturesOnly);
+    this.appendMovesForQueen(board, legalMovesFast, true, !capturesOnly);
+    this.appendMovesForKing(board, legalMovesFast, true, !capturesOnly);
 
     if (!capturesOnly) {
       legalMovesFast.addAll(this.getMovesForCastling(board));
@@ -673,6 +938,96 @@ public class LegalMoveGenerator {
     return legalMovesFast;
   }
 
+  /**
+   * Generates the pseudo-legal moves for a given board that do not capture, including castling.
+   * Together with {@link #legalMovesFast(Board, boolean)} with captures only, this splits the
+   * pseudo-legal moves into two disjoint lists so that the search can generate the noncaptures
+   * only when the captures did not already produce a cutoff.
+   * 
+   * @param board the board for which to generate pseudo-legal moves
+   * @return an ArrayList of pseudo-legal moves that do not capture
+   */
+  public ArrayList<Move> legalMovesFastQuiet(Board board) {
+    ArrayList<Move> legalMovesFast = new ArrayList<Move>();
+
+    this.appendMovesForPawn(board, legalMovesFast, false, true);
+    this.appendMovesForKnight(board, legalMovesFast, false, true);
+    this.appendMovesForBishop(board, legalMovesFast, false, true);
+    this.appendMovesForRook(board, legalMovesFast, false, true);
+    this.appendMovesForQueen(board, legalMovesFast, false, true);
+    this.appendMovesForKing(board, legalMovesFast, false, true);
+    legalMovesFast.addAll(this.getMovesForCastling(board));
+
+    return legalMovesFast;
+  }
+
+  /**
+   * Returns whether a move is pseudo-legal on a given board, without generating the pseudo-legal
+   * moves. This is useful for moves remembered from elsewhere in the search tree, such as the
+   * transposition table move or killer moves, which may not be playable in the current position.
+   * For any position reachable in a game this agrees with {@link #legalMovesFast(Board, boolean)}.
+   * 
+   * @param board the board containing the position
+   * @param move the move to test, which may be null
+   * @return true if the move is pseudo-legal, false otherwise
+   */
+  public boolean isPseudoLegal(Board board, Move move) {
+    if (move == null) {
+      return false;
+    }
+    Piece piece = board.pieceOnSquare(board.turn, move.source);
+    if (piece == null) {
+      return false;
+    }
+    long destinationMask = 1L << move.destination;
+    if (board.playerBitboards.get(board.turn).intersects(destinationMask)) {
+      return false;
+    }
+    long allPieces = board.allPieces.getData();
+    if (piece == Piece.PAWN) {
+      boolean isPromotion = board.turn == Color.WHITE ? move.destination >= 56
+          : move.destination < 8;
+      if (isPromotion == (move.promoteTo == null)) {
+        return false;
+      }
+      if (move.promoteTo == Piece.PAWN || move.promoteTo == Piece.KING) {
+        return false;
+      }
+      long oppPieces = board.playerBitboards.get(Color.flip(board.turn)).getData();
+      long[] attackSquaresMoveTable = board.turn == Color.WHITE
+          ? this.attackSquaresPawnMoveWhite : this.attackSquaresPawnMoveBlack;
+      long[] attackSquaresCaptureTable = board.turn == Color.WHITE
+          ? this.attackSquaresPawnCaptureWhite : this.attackSquaresPawnCaptureBlack;
+      if ((attackSquaresCaptureTable[move.source] & destinationMask) != 0) {
+        return (destinationMask & (oppPieces | board.enPassantTarget)) != 0;
+      }
+      if ((attackSquaresMoveTable[move.source] & destinationMask) == 0) {
+        return false;
+      }
+      // For a move of two squares the square in between must be empty as well.
+      long between = board.turn == Color.WHITE ? (1L << move.source) << 8
+          : (1L << move.source) >>> 8;
+      return ((destinationMask | between) & allPieces) == 0;
+    }
+    if (move.promoteTo != null) {
+      return false;
+    }
+    if (piece == Piece.KNIGHT) {
+      return (this.attackSquaresKnight[move.source] & destinationMask) != 0;
+    } else if (piece == Piece.BISHOP) {
+      return (this.blockedAttackSquaresBishop(move.source, allPieces) & destinationMask) != 0;
+    } else if (piece == Piece.ROOK) {
+      return (this.blockedAttackSquaresRook(move.source, allPieces) & destinationMask) != 0;
+    } else if (piece == Piece.QUEEN) {
+      return ((this.blockedAttackSquaresBishop(move.source, allPieces)
+          | this.blockedAttackSquaresRook(move.source, allPieces)) & destinationMask) != 0;
+    }
+    if ((this.attackSquaresKing[move.source] & destinationMask) != 0) {
+      return true;
+    }
+    return this.getMovesForCastling(board).contains(move);
+  }
+
   /**
    * Generates legal moves for a given board.
    * 
@@ -718,4 +1073,36 @@ public class LegalMoveGenerator {
   private long[] attackSquaresQueen = new long[64];
   private long[] attackSquaresRook = new long[64];
   private long[] attackSquaresVertical = new long[64];
+
+  /**
+   * For each square, the white pawns that could capture onto it. This is the reverse of
+   * {@link #attackSquaresPawnCaptureWhite}.
+   */
+  private long[] attackersPawnWhite = new long[64];
+
+  /**
+   * For each square, the black pawns that could capture onto it. This is the reverse of
+   * {@link #attackSquaresPawnCaptureBlack}.
+   */
+  private long[] attackersPawnBlack = new long[64];
+
+  /** The pieces in order of increasing value, used to pick the least valuable attacker. */
+  private static Piece[] piecesByValue =
+      {Piece.PAWN, Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN, Piece.KING};
+
+  /**
+   * The piece values in centipawns used by {@link #see(Board, Move)}, indexed by piece ordinal.
+   * These roughly follow the material weights in {@link Evaluation}; the king is given a large but
+   * finite value so that the exchange arithmetic cannot overflow.
+   */
+  private static int[] seeValues = new int[Piece.values().length];
+
+  static {
+    LegalMoveGenerator.seeValues[Piece.BISHOP.ordinal()] = 333;
+    LegalMoveGenerator.seeValues[Piece.KING.ordinal()] = 20000;
+    LegalMoveGenerator.seeValues[Piece.KNIGHT.ordinal()] = 320;
+    LegalMoveGenerator.seeValues[Piece.PAWN.ordinal()] = 100;
+    LegalMoveGenerator.seeValues[Piece.QUEEN.ordinal()] = 880;
+    LegalMoveGenerator.seeValues[Piece.ROOK.ordinal()] = 510;
+  }
 }
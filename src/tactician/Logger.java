@@ -0,0 +1,205 @@
+package tactician;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class writes the engine's log file on a background thread, so that logging never delays a
+ * reply to the GUI. Lines are put on a bounded queue, and a single thread takes them off and
+ * writes them through one buffered writer that stays open, flushing whenever the queue runs empty.
+ * If the queue is full the line is dropped rather than making the search wait; the number of
+ * dropped lines is written to the log once there is room again.
+ *
+ * <p>Each line has a level, and only lines at or below the logger's level are kept: {@link
+ * Level#INFO} for the UCI commands and responses and a summary of each search, {@link
+ * Level#DEBUG} for details such as the board after each position command.
+ *
+ * @author Phil Leszczynski
+ */
+public class Logger {
+  /** The levels of detail of the log, from least to most detailed. */
+  public enum Level {
+    OFF, INFO, DEBUG
+  }
+
+  /**
+   * Initializes a logger writing to the given file, which is emptied first, and starts its
+   * background thread. If the file cannot be opened the lines are discarded.
+   *
+   * @param path the path of the log file
+   * @param level the most detailed level to write
+   */
+  public Logger(String path, Level level) {
+    this.path = path;
+    this.level = level;
+    try {
+      this.writer = new BufferedWriter(new FileWriter(path, false));
+    } catch (IOException e) {
+      System.err.println("Could not open log file: " + path);
+    }
+    this.thread = new Thread(this::run, "Logger");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Returns the path of the log file.
+   *
+   * @return the path of the log file
+   */
+  public String getPath() {
+    return this.path;
+  }
+
+  /**
+   * Returns the most detailed level written to the log.
+   *
+   * @return the level
+   */
+  public Level getLevel() {
+    return this.level;
+  }
+
+  /**
+   * Sets the most detailed level written to the log.
+   *
+   * @param level the level, or {@link Level#OFF} to write nothing
+   */
+  public void setLevel(Level level) {
+    this.level = level;
+  }
+
+  /**
+   * Returns whether lines at the given level are written. Callers can check this before building
+   * an expensive line.
+   *
+   * @param level the level of a line
+   * @return true if lines at the level are written
+   */
+  public boolean isEnabled(Level level) {
+    return level != Level.OFF && level.ordinal() <= this.level.ordinal();
+  }
+
+  /**
+   * Logs a line at {@link Level#INFO}.
+   *
+   * @param line the text to log, without a newline
+   */
+  public void info(String line) {
+    this.log(Level.INFO, line);
+  }
+
+  /**
+   * Logs a line at {@link Level#DEBUG}.
+   *
+   * @param line the text to log, without a newline
+   */
+  public void debug(String line) {
+    this.log(Level.DEBUG, line);
+  }
+
+  /**
+   * Queues a line to be written if its level is enabled. Returns immediately; if the queue is full
+   * the line is dropped.
+   *
+   * @param level the level of the line
+   * @param line the text to log, without a newline
+   */
+  public void log(Level level, String line) {
+    if (!this.isEnabled(level) || this.closed) {
+      return;
+    }
+    if (!this.queue.offer(line)) {
+      synchronized (this) {
+        this.dropped++;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of lines dropped so far because the queue was full.
+   *
+   * @return the number of dropped lines
+   */
+  public synchronized long getDropped() {
+    return this.dropped;
+  }
+
+  /**
+   * Writes out the lines still in the queue, closes the file, and stops the background thread.
+   * Lines logged afterwards are discarded. Waits for the thread to finish.
+   */
+  public void close() {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      this.queue.put(CLOSE);
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Takes lines off the queue and writes them until {@link #close()} is called. */
+  private void run() {
+    long droppedReported = 0;
+    try {
+      while (true) {
+        String line = this.queue.take();
+        if (line == CLOSE) {
+          break;
+        }
+        long dropped = this.getDropped();
+        if (dropped > droppedReported) {
+          this.write("Dropped " + (dropped - droppedReported) + " log lines");
+          droppedReported = dropped;
+        }
+        this.write(line);
+        if (this.queue.isEmpty() && this.writer != null) {
+          this.writer.flush();
+        }
+      }
+      if (this.writer != null) {
+        this.writer.close();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      System.err.println("Could not write to log file: " + this.path);
+    }
+  }
+
+  /**
+   * Writes a line through the buffered writer, if the file could be opened.
+   *
+   * @param line the text to write, followed by a newline
+   */
+  private void write(String line) throws IOException {
+    if (this.writer != null) {
+      this.writer.write(line);
+      this.writer.newLine();
+    }
+  }
+
+  /**
+   * The number of lines the queue holds. A search only logs a handful of lines, so this is only
+   * reached if the disk stalls for a long time.
+   */
+  public static int QUEUE_CAPACITY = 8192;
+
+  /** The line queued by {@link #close()} to stop the thread, compared by identity. */
+  private static String CLOSE = new String("close");
+
+  private String path;
+  private volatile Level level;
+  private volatile boolean closed = false;
+  private long dropped = 0;
+  private BufferedWriter writer = null;
+  private BlockingQueue<String> queue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+  private Thread thread;
+}
@@ -98,6 +98,16 @@ public class Move {
     return true;
   }
 
+  /**
+   * Returns a hash code consistent with {@link #equals(Object)}, so that moves can be used as keys
+   * in hash maps.
+   */
+  @Override
+  public int hashCode() {
+    int promoteToHash = this.promoteTo == null ? 0 : this.promoteTo.ordinal() + 1;
+    return (this.source * 64 + this.destination) * 8 + promoteToHash;
+  }
+
   /**
    * Outputs the string representation of the move containing the source square, destination square,
    * and promotion piece if any. For example this may be "a7a5" or "e7e8Q". Note that algebraic
@@ -0,0 +1,283 @@
+package tactician;
+
+import java.util.ArrayList;
+
+/**
+ * This class hands out the pseudo-legal moves of a position one at a time, in the order that the
+ * alpha-beta search in {@link Brain} should try them. Moves are generated in stages and a stage is
+ * only generated once the previous stages have run out of moves. Many nodes end in a beta cutoff
+ * after the first move or two, so this often saves us from generating most of the moves at all.
+ *
+ * <p>The stages are as follows. First comes the move from the transposition table, which is
+ * checked for pseudo-legality without generating any moves. Then the captures are generated and
+ * handed out by most valuable victim and least valuable attacker; captures that lose material
+ * according to the static exchange evaluation (see {@link Board#see(Move)}) are held back. Then
+ * come the killer moves and the countermove, again without generating any moves. Then the
+ * noncaptures are generated and handed out by their history scores. Finally come the captures
+ * that were held back. No move is handed out twice.
+ *
+ * <p>For the quiescent search only the captures that do not lose material are handed out, see
+ * {@link #MovePicker(Board, long)}.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Move+Ordering">Move Ordering</a>
+ * @author Phil Leszczynski
+ */
+public class MovePicker {
+  /** This enum lists the stages of move generation, in the order they are visited. */
+  private enum Stage {
+    TRANSPOSITION_MOVE, CAPTURES_INIT, GOOD_CAPTURES, KILLER_MOVES, COUNTER_MOVE, QUIETS_INIT,
+    QUIETS, BAD_CAPTURES, DONE
+  }
+
+  /**
+   * Initializes a move picker for the main alpha-beta search.
+   *
+   * @param board the board containing the position
+   * @param transpositionMove the best move found in the transposition table, or null
+   * @param killerMoves the killer moves for the current depth, any of which may be null
+   * @param counterMove the countermove to the opponent's previous move, or null
+   * @param history the butterfly history for the player to move, indexed by source and
+   *        destination square
+   * @param continuationHistory the continuation history following the opponent's previous move,
+   *        indexed by {@link #pieceSquareIndex(Piece, int)}, or null if there is none
+   */
+  public MovePicker(Board board, Move transpositionMove, Move[] killerMoves, Move counterMove,
+      int[][] history, int[] continuationHistory) {
+    this.board = board;
+    this.transpositionMove = transpositionMove;
+    this.killerMoves = killerMoves;
+    this.counterMove = counterMove;
+    this.history = history;
+    this.continuationHistory = continuationHistory;
+    this.captureTargets = ~0L;
+    this.quiescent = false;
+    this.stage = Stage.TRANSPOSITION_MOVE;
+  }
+
+  /**
+   * Initializes a move picker for the quiescent search. It hands out only the captures onto the
+   * target squares that do not lose material according to the static exchange evaluation.
+   *
+   * @param board the board containing the position
+   * @param captureTargets the 64-bit long mask of squares on which to consider captures
+   */
+  public MovePicker(Board board, long captureTargets) {
+    this.board = board;
+    this.killerMoves = new Move[0];
+    this.captureTargets = captureTargets;
+    this.quiescent = true;
+    this.stage = Stage.CAPTURES_INIT;
+  }
+
+  /**
+   * Returns the index of a piece moving to a given square within a continuation history table.
+   *
+   * @param piece the type of piece that moves
+   * @param square the index of the destination square, 0-63
+   * @return the combined piece and square index, 0-383
+   */
+  public static int pieceSquareIndex(Piece piece, int square) {
+    return piece.ordinal() * 64 + square;
+  }
+
+  /**
+   * Returns the next move to search, generating moves for the next stage if needed.
+   *
+   * @return the next pseudo-legal move, or null if all moves have been handed out
+   */
+  public Move next() {
+    while (true) {
+      Move move;
+      switch (this.stage) {
+        case TRANSPOSITION_MOVE:
+          this.stage = Stage.CAPTURES_INIT;
+          if (this.board.isPseudoLegal(this.transpositionMove)) {
+            return this.transpositionMove;
+          }
+          break;
+        case CAPTURES_INIT:
+          this.initCaptures();
+          this.stage = Stage.GOOD_CAPTURES;
+          break;
+        case GOOD_CAPTURES:
+          while ((move = this.selectBest()) != null) {
+            if (move.equals(this.transpositionMove)) {
+              continue;
+            }
+            if (!this.board.seeGreaterOrEqual(move, 0)) {
+              this.badCaptures.add(move);
+              continue;
+            }
+            return move;
+          }
+          this.stage = this.quiescent ? Stage.DONE : Stage.KILLER_MOVES;
+          break;
+        case KILLER_MOVES:
+          while (this.killerIndex < this.killerMoves.length) {
+            move = this.killerMoves[this.killerIndex++];
+            if (this.isUnsearchedQuiet(move)) {
+              return move;
+            }
+          }
+          this.stage = Stage.COUNTER_MOVE;
+          break;
+        case COUNTER_MOVE:
+          this.stage = Stage.QUIETS_INIT;
+          if (this.isUnsearchedQuiet(this.counterMove) && !this.isKillerMove(this.counterMove)) {
+            return this.counterMove;
+          }
+          break;
+        case QUIETS_INIT:
+          this.initQuiets();
+          this.stage = Stage.QUIETS;
+          break;
+        case QUIETS:
+          while ((move = this.selectBest()) != null) {
+            if (move.equals(this.transpositionMove) || this.isKillerMove(move)
+                || move.equals(this.counterMove)) {
+              continue;
+            }
+            return move;
+          }
+          this.stage = Stage.BAD_CAPTURES;
+          break;
+        case BAD_CAPTURES:
+          if (this.badCaptureIndex < this.badCaptures.size()) {
+            return this.badCaptures.get(this.badCaptureIndex++);
+          }
+          this.stage = Stage.DONE;
+          break;
+        default:
+          return null;
+      }
+    }
+  }
+
+  /**
+   * Generates the captures and scores them by most valuable victim, least valuable attacker. For
+   * example a pawn capturing a queen is tried before a queen capturing a pawn.
+   */
+  private void initCaptures() {
+    this.moves = new ArrayList<Move>();
+    for (Move move : this.board.legalMovesFast(true)) {
+      if ((this.captureTargets & (1L << move.destination)) != 0) {
+        this.moves.add(move);
+      }
+    }
+    this.scores = new int[this.moves.size()];
+    Color turnFlipped = Color.flip(this.board.turn);
+    for (int i = 0; i < this.scores.length; i++) {
+      Move move = this.moves.get(i);
+      Piece victim = this.board.pieceOnSquare(turnFlipped, move.destination);
+      Piece attacker = this.board.pieceOnSquare(this.board.turn, move.source);
+      // En passant is the only capture with an empty destination square.
+      int victimValue = LegalMoveGenerator.seeValue(victim == null ? Piece.PAWN : victim);
+      this.scores[i] = 64 * victimValue - LegalMoveGenerator.seeValue(attacker);
+    }
+    this.index = 0;
+  }
+
+  /** Generates the noncaptures and scores them by their history scores. */
+  private void initQuiets() {
+    this.moves = this.board.legalMovesFastQuiet();
+    this.scores = new int[this.moves.size()];
+    for (int i = 0; i < this.scores.length; i++) {
+      Move move = this.moves.get(i);
+      int score = this.history[move.source][move.destination];
+      if (this.continuationHistory != null) {
+        Piece piece = this.board.pieceOnSquare(this.board.turn, move.source);
+        // The piece can be missing for a castling move if the castling rights were set from a FEN
+        // string that has no king on its home square.
+        if (piece != null) {
+          score += this.continuationHistory[pieceSquareIndex(piece, move.destination)];
+        }
+      }
+      this.scores[i] = score;
+    }
+    this.index = 0;
+  }
+
+  /**
+   * Returns the highest scoring move not yet handed out in the current stage and moves it to the
+   * front of the unvisited moves. This is a selection sort done one step at a time, so we do not
+   * pay for sorting moves that are never reached.
+   *
+   * @return the highest scoring remaining move, or null if there are none
+   */
+  private Move selectBest() {
+    if (this.index >= this.moves.size()) {
+      return null;
+    }
+    int best = this.index;
+    for (int i = this.index + 1; i < this.scores.length; i++) {
+      if (this.scores[i] > this.scores[best]) {
+        best = i;
+      }
+    }
+    Move move = this.moves.get(best);
+    this.moves.set(best, this.moves.get(this.index));
+    this.scores[best] = this.scores[this.index];
+    this.moves.set(this.index, move);
+    this.index++;
+    return move;
+  }
+
+  /**
+   * Returns whether a move is one of the killer moves.
+   *
+   * @param move the move to test
+   * @return true if the move is a killer move, false otherwise
+   */
+  private boolean isKillerMove(Move move) {
+    for (Move killerMove : this.killerMoves) {
+      if (move.equals(killerMove)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether a remembered move such as a killer move can be handed out as a noncapture. It
+   * must be pseudo-legal, must not capture (as then it was handed out with the captures), and
+   * must not be the transposition table move.
+   *
+   * @param move the move to test, which may be null
+   * @return true if the move should be handed out, false otherwise
+   */
+  private boolean isUnsearchedQuiet(Move move) {
+    if (move == null || move.equals(this.transpositionMove)) {
+      return false;
+    }
+    if (this.board.isCapture(move)) {
+      return false;
+    }
+    return this.board.isPseudoLegal(move);
+  }
+
+  private Board board;
+  private Stage stage;
+  private boolean quiescent;
+  private long captureTargets;
+
+  private Move transpositionMove = null;
+  private Move[] killerMoves;
+  private int killerIndex = 0;
+  private Move counterMove = null;
+
+  private int[][] history = null;
+  private int[] continuationHistory = null;
+
+  /** The moves of the current stage, with those already handed out at the front. */
+  private ArrayList<Move> moves = null;
+
+  /** The scores of {@link #moves}, kept in the same order. */
+  private int[] scores = null;
+
+  /** The index of the first move in {@link #moves} not yet handed out. */
+  private int index = 0;
+
+  /** The captures held back because they lose material, handed out last. */
+  private ArrayList<Move> badCaptures = new ArrayList<Move>();
+  private int badCaptureIndex = 0;
+}
@@ -0,0 +1,244 @@
+package tactician;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class is an efficiently updatable neural network (NNUE) that can replace the hand-crafted
+ * static evaluation in {@link Evaluation}. It is optional: unless a network is loaded and set on
+ * the board through {@link Board#setNeuralNetwork(NeuralNetwork)}, the engine evaluates as before.
+ *
+ * <p>The network has one input per combination of color, piece, and square, 768 in all, of which
+ * only the inputs for the pieces actually on the board are 1. These feed a hidden layer, the
+ * accumulator, which is computed once for each player's perspective: from black's perspective the
+ * board is flipped vertically and the colors are swapped, so both perspectives share the same
+ * weights. The two accumulators are clipped to the range 0 to {@link #QA} and fed into a single
+ * output neuron, with the player to move's accumulator first.
+ *
+ * <p>The key idea is that a move only turns a handful of inputs on or off, so instead of computing
+ * the hidden layer from scratch we add or subtract a column of weights from the accumulators as
+ * each piece is placed or removed. The board does this alongside its piece-square sums; see
+ * {@link #addFeature(short[][], Color, Piece, int)}. Only the output layer is computed at each
+ * evaluation.
+ *
+ * <p>The weights are quantized to 16-bit integers and are read from a file of little-endian 16-bit
+ * values in the following order: the hidden layer weights, 768 rows of {@code hiddenSize} values
+ * each; the {@code hiddenSize} hidden layer biases; the {@code 2 * hiddenSize} output weights, the
+ * player to move's half first; and the output bias. The hidden size is deduced from the file size.
+ * Within a perspective the inputs are ordered by the piece's color (own pieces first), then by
+ * piece in the order pawn, knight, bishop, rook, queen, king, then by square from a1 to h8.
+ *
+ * @see <a href="https://www.chessprogramming.org/NNUE">NNUE</a>
+ * @author Phil Leszczynski
+ */
+public class NeuralNetwork {
+  /**
+   * Loads a network from a weights file. See the class definition for the file format.
+   *
+   * @param path the path of the weights file
+   * @throws IOException if the file cannot be read or its size does not fit the format
+   */
+  public NeuralNetwork(String path) throws IOException {
+    byte[] bytes = Files.readAllBytes(Paths.get(path));
+    int numValues = bytes.length / 2;
+    if (bytes.length % 2 != 0 || numValues % (NUM_FEATURES + 3) != 1) {
+      throw new IOException("Network file has an unexpected size: " + path);
+    }
+    int hiddenSize = (numValues - 1) / (NUM_FEATURES + 3);
+    ShortBuffer values = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    short[] featureWeights = new short[NUM_FEATURES * hiddenSize];
+    short[] featureBiases = new short[hiddenSize];
+    short[] outputWeights = new short[2 * hiddenSize];
+    values.get(featureWeights);
+    values.get(featureBiases);
+    values.get(outputWeights);
+    short outputBias = values.get();
+    this.init(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+  }
+
+  /**
+   * Initializes a network from weights already in memory.
+   *
+   * @param hiddenSize the number of neurons in the hidden layer for each perspective
+   * @param featureWeights the hidden layer weights, {@code hiddenSize} values for each input
+   * @param featureBiases the hidden layer biases
+   * @param outputWeights the output weights, the player to move's half first
+   * @param outputBias the output bias
+   */
+  public NeuralNetwork(int hiddenSize, short[] featureWeights, short[] featureBiases,
+      short[] outputWeights, short outputBias) {
+    this.init(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+  }
+
+  /**
+   * Sets the weights of the network.
+   *
+   * @param hiddenSize the number of neurons in the hidden layer for each perspective
+   * @param featureWeights the hidden layer weights, {@code hiddenSize} values for each input
+   * @param featureBiases the hidden layer biases
+   * @param outputWeights the output weights, the player to move's half first
+   * @param outputBias the output bias
+   */
+  private void init(int hiddenSize, short[] featureWeights, short[] featureBiases,
+      short[] outputWeights, short outputBias) {
+    this.hiddenSize = hiddenSize;
+    this.featureWeights = featureWeights;
+    this.featureBiases = featureBiases;
+    this.outputWeights = outputWeights;
+    this.outputBias = outputBias;
+  }
+
+  /**
+   * Returns the number of neurons in the hidden layer for each perspective.
+   *
+   * @return the hidden layer size
+   */
+  public int getHiddenSize() {
+    return this.hiddenSize;
+  }
+
+  /**
+   * Allocates a pair of accumulators, indexed by the ordinal of the perspective's color, and sets
+   * them to the hidden layer biases as for an empty board.
+   *
+   * @return the new accumulators
+   */
+  public short[][] newAccumulators() {
+    short[][] accumulators = new short[2][this.hiddenSize];
+    this.resetAccumulators(accumulators);
+    return accumulators;
+  }
+
+  /**
+   * Sets a pair of accumulators to the hidden layer biases as for an empty board.
+   *
+   * @param accumulators the accumulators to reset, indexed by the ordinal of the perspective's
+   *        color
+   */
+  public void resetAccumulators(short[][] accumulators) {
+    for (short[] accumulator : accumulators) {
+      System.arraycopy(this.featureBiases, 0, accumulator, 0, this.hiddenSize);
+    }
+  }
+
+  /**
+   * Updates both accumulators for a piece placed on a square.
+   *
+   * @param accumulators the accumulators to update, indexed by the ordinal of the perspective's
+   *        color
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the piece's square, 0-63
+   */
+  public void addFeature(short[][] accumulators, Color color, Piece piece, int index) {
+    for (Color perspective : colors) {
+      short[] accumulator = accumulators[perspective.ordinal()];
+      int offset = featureIndex(perspective, color, piece, index) * this.hiddenSize;
+      for (int i = 0; i < this.hiddenSize; i++) {
+        accumulator[i] += this.featureWeights[offset + i];
+      }
+    }
+  }
+
+  /**
+   * Updates both accumulators for a piece removed from a square.
+   *
+   * @param accumulators the accumulators to update, indexed by the ordinal of the perspective's
+   *        color
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the piece's square, 0-63
+   */
+  public void removeFeature(short[][] accumulators, Color color, Piece piece, int index) {
+    for (Color perspective : colors) {
+      short[] accumulator = accumulators[perspective.ordinal()];
+      int offset = featureIndex(perspective, color, piece, index) * this.hiddenSize;
+      for (int i = 0; i < this.hiddenSize; i++) {
+        accumulator[i] -= this.featureWeights[offset + i];
+      }
+    }
+  }
+
+  /**
+   * Evaluates a board from its accumulators, which must have been kept up to date by this network.
+   *
+   * @param board the board to evaluate
+   * @return the evaluation of the board in centipawns from the perspective of the player to move
+   */
+  public int evaluate(Board board) {
+    short[] us = board.accumulators[board.turn.ordinal()];
+    short[] them = board.accumulators[Color.flip(board.turn).ordinal()];
+    // The sum can exceed the int range for large hidden layers.
+    long sum = 0;
+    for (int i = 0; i < this.hiddenSize; i++) {
+      sum += clippedRelu(us[i]) * this.outputWeights[i];
+    }
+    for (int i = 0; i < this.hiddenSize; i++) {
+      sum += clippedRelu(them[i]) * this.outputWeights[this.hiddenSize + i];
+    }
+    return (int) ((sum + this.outputBias) * SCALE / (QA * QB));
+  }
+
+  /**
+   * Clips a hidden layer value to the range 0 to {@link #QA}.
+   *
+   * @param value the hidden layer value
+   * @return the clipped value
+   */
+  private static int clippedRelu(short value) {
+    return Math.min(Math.max(value, 0), QA);
+  }
+
+  /**
+   * Returns the index of the input for a piece on a square, from the given player's perspective.
+   * See the class definition for the order of the inputs.
+   *
+   * @param perspective the player from whose perspective to index
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the piece's square, 0-63
+   * @return the index of the input, 0-767
+   */
+  public static int featureIndex(Color perspective, Color color, Piece piece, int index) {
+    int side = color == perspective ? 0 : 1;
+    int square = perspective == Color.WHITE ? index : index ^ 56;
+    return side * 384 + pieceOrder[piece.ordinal()] * 64 + square;
+  }
+
+  /** The number of inputs, one for each color, piece, and square. */
+  public static int NUM_FEATURES = 768;
+
+  /** The quantization scale of the hidden layer, which is also the clipping bound. */
+  public static int QA = 255;
+
+  /** The quantization scale of the output weights. */
+  public static int QB = 64;
+
+  /** The number of centipawns that the network's unit output corresponds to. */
+  public static int SCALE = 400;
+
+  // Cached since Color.values() allocates a new array on every call.
+  private static Color[] colors = Color.values();
+
+  /** The position of each piece within the inputs, indexed by piece ordinal. */
+  private static int[] pieceOrder = new int[Piece.values().length];
+
+  static {
+    pieceOrder[Piece.PAWN.ordinal()] = 0;
+    pieceOrder[Piece.KNIGHT.ordinal()] = 1;
+    pieceOrder[Piece.BISHOP.ordinal()] = 2;
+    pieceOrder[Piece.ROOK.ordinal()] = 3;
+    pieceOrder[Piece.QUEEN.ordinal()] = 4;
+    pieceOrder[Piece.KING.ordinal()] = 5;
+  }
+
+  private int hiddenSize;
+  private short[] featureWeights;
+  private short[] featureBiases;
+  private short[] outputWeights;
+  private short outputBias;
+}
@@ -8,246 +8,332 @@ package tactician;
  * structure and king position tend to be relatively static throughout the game, so we can make
  * more detailed calculations related to pawn structure and king safety and retrieve them at a
  * relatively high hit rate.
- * 
+ *
  * <p>A key concept is the position hash, a Zobrist hash containing the information about pawns and
  * kings for each player. We ignore the side to move, castling rights, and the en passant target.
- * See {@link PositionHasher} for more details. Within {@link PawnHashTableEntry} we also store the
- * pawn masks and the king indices to guard against the possibility of a hash collision. For both
- * players we count the number of doubled pawns (pawns on the same file), isolated pawns (pawns
- * with no neighbors on adjacent files), and passed pawns (pawns which can promote without
- * encountering enemy pawns on the same or adjacent files).
- * 
+ * See {@link PositionHasher} for more details. For both players we count the number of doubled
+ * pawns (pawns on the same file), isolated pawns (pawns with no neighbors on adjacent files), and
+ * passed pawns (pawns which can promote without encountering enemy pawns on the same or adjacent
+ * files). We also store the raw king shelter terms: the penalty for a missing or advanced pawn
+ * shield, and whether the king is on an open file. These depend only on the pawns and the king, so
+ * they are worth caching; {@link Evaluation} scales them by how far we are into the endgame.
+ *
+ * <p>Like {@link TranspositionTable} we pack the entries into primitive arrays rather than storing
+ * objects. {@link #keys} holds the position hash of each slot and {@link #data} holds the entry as
+ * a 64-bit long, see {@link #probe(Board)}. The low 32 bits are for white and the high 32 bits are
+ * for black. Within each half, bits 0-3 hold the number of doubled pawns, bits 4-7 the number of
+ * isolated pawns, bits 8-11 the number of passed pawns, bits 12-19 the pawn shield penalty in
+ * centipawns, and bit 20 is set if the king is on an open file. The accessors such as
+ * {@link #numDoubledPawns(long, Color)} unpack these fields.
+ *
  * @author Phil Leszczynski
  */
 public class PawnKingHashTable {
   /**
-   * This class contains entries in the pawn/king transposition table. It stores the position hash
-   * as well as the pawn masks and king indices to avoid hash collisions. For each player it stores
-   * the number of doubled, isolated, and passed pawns.
-   * 
-   * @author Phil Leszczynski
-   */
-  public class PawnHashTableEntry {
-    /** Initializes an empty hash table entry. **/
-    public PawnHashTableEntry() {}
-
-    /**
-     * Initializes a hash table entry with a given position hash, pawn masks, and king indices.
-     * 
-     * @param positionHash the Zobrist hash describing the pawns and kings
-     * @param pawnMaskWhite the 64-bit pawn bitboard mask for white
-     * @param pawnMaskBlack the 64-bit pawn bitboard mask for black
-     * @param kingIndexWhite the index of the white king, 0-63
-     * @param kingIndexBlack the index of the black king, 0-63
-     */
-    public PawnHashTableEntry(long positionHash, long pawnMaskWhite, long pawnMaskBlack,
-        int kingIndexWhite, int kingIndexBlack) {
-      this.positionHash = positionHash;
-      this.pawnMaskWhite = pawnMaskWhite;
-      this.pawnMaskBlack = pawnMaskBlack;
-      this.kingIndexWhite = kingIndexWhite;
-      this.kingIndexBlack = kingIndexBlack;
+   * Initializes a pawn/king hash table with at least the given number of entries, rounded up to a
+   * power of two.
+   *
+   * @param size the minimum number of hash entries to store in the table
+   */
+  public PawnKingHashTable(int size) {
+    int capacity = Integer.highestOneBit(Math.max(size, 1));
+    if (capacity < size) {
+      capacity <<= 1;
+    }
+    this.mask = capacity - 1;
+    this.keys = new long[capacity];
+    this.data = new long[capacity];
+    this.clear();
+  }
+
+  /**
+   * Returns the packed entry for the pawns and kings of the given board. If the entry is not in the
+   * table it is computed and stored, overwriting whatever was in its slot, so this is a single call
+   * both when the entry is found and when it is not. See the class definition for the packing.
+   *
+   * @param board the board whose pawns and kings to look up
+   * @return the 64-bit long packed entry for the board
+   */
+  public long probe(Board board) {
+    long positionHash = board.positionHashPawnsKings;
+    int index = (int) positionHash & this.mask;
+    this.probes++;
+    if (this.keys[index] == positionHash && this.data[index] != EMPTY) {
+      this.hits++;
+      return this.data[index];
+    }
+    long pawnMaskWhite = board.bitboards.get(Color.WHITE).get(Piece.PAWN).getData();
+    long pawnMaskBlack = board.bitboards.get(Color.BLACK).get(Piece.PAWN).getData();
+    long kingMaskWhite = board.bitboards.get(Color.WHITE).get(Piece.KING).getData();
+    long kingMaskBlack = board.bitboards.get(Color.BLACK).get(Piece.KING).getData();
+    long entry = compute(pawnMaskWhite, pawnMaskBlack, kingMaskWhite, kingMaskBlack);
+    this.keys[index] = positionHash;
+    this.data[index] = entry;
+    return entry;
+  }
+
+  /** Removes all entries from the table and resets the probe and hit counters. */
+  public void clear() {
+    for (int i = 0; i < this.keys.length; i++) {
+      this.keys[i] = 0;
+      this.data[i] = EMPTY;
+    }
+    this.probes = 0;
+    this.hits = 0;
+  }
+
+  /**
+   * Returns the number of calls to {@link #probe(Board)} since the table was last cleared.
+   *
+   * @return the number of probes
+   */
+  public long getProbes() {
+    return this.probes;
+  }
+
+  /**
+   * Returns the number of calls to {@link #probe(Board)} that found the entry in the table since
+   * the table was last cleared.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the fraction of probes that found the entry in the table since the table was last
+   * cleared.
+   *
+   * @return the hit rate between 0 and 1, or 0 if there have been no probes
+   */
+  public double getHitRate() {
+    if (this.probes == 0) {
+      return 0;
     }
+    return (double) this.hits / this.probes;
+  }
 
-    /** The Zobrist hash describing the pawns and kings. */
-    public long positionHash = 0;
-
-    /** The 64-bit pawn bitboard mask for white. */
-    public long pawnMaskWhite = 0;
-
-    /** The 64-bit pawn bitboard mask for black. */
-    public long pawnMaskBlack = 0;
-
-    /** The index of the white king, 0-63. */
-    public int kingIndexWhite = 0;
-
-    /** The index of the black king, 0-63. */
-    public int kingIndexBlack = 0;
-
-    /**
-     * The number of doubled pawns for white, or pawns that are on the same file as other white
-     * pawns.
-     */
-    public int numDoubledPawnsWhite = 0;
-
-    /**
-     * The number of doubled pawns for black, or pawns that are on the same file as other black
-     * pawns.
-     */
-    public int numDoubledPawnsBlack = 0;
-
-    /**
-     * The number of isolated pawns for white, or pawns that have no white neighbors on adjacent
-     * files. Note it is possible for pawns to be both doubled and isolated.
-     */
-    public int numIsolatedPawnsWhite = 0;
-
-    /**
-     * The number of isolated pawns for black, or pawns that have no black neighbors on adjacent
-     * files. Note it is possible for pawns to be both doubled and isolated.
-     */
-    public int numIsolatedPawnsBlack = 0;
-
-    /**
-     * The number of passed pawns for white, or pawns that can neither be blocked nor captured by
-     * enemy pawns on their way to promotion.
-     */
-    public int numPassedPawnsWhite = 0;
-
-    /**
-     * The number of passed pawns for black, or pawns that can neither be blocked nor captured by
-     * enemy pawns on their way to promotion.
-     */
-    public int numPassedPawnsBlack = 0;
+  /**
+   * Returns the number of doubled pawns for a player, or pawns that are on the same file as other
+   * pawns of the same color.
+   *
+   * @param entry the packed entry returned by {@link #probe(Board)}
+   * @param color the player whose pawns to count
+   * @return the number of doubled pawns
+   */
+  public static int numDoubledPawns(long entry, Color color) {
+    return (int) (entry >>> shift(color)) & 0xf;
+  }
+
+  /**
+   * Returns the number of isolated pawns for a player, or pawns that have no neighbors of the same
+   * color on adjacent files. Note it is possible for pawns to be both doubled and isolated.
+   *
+   * @param entry the packed entry returned by {@link #probe(Board)}
+   * @param color the player whose pawns to count
+   * @return the number of isolated pawns
+   */
+  public static int numIsolatedPawns(long entry, Color color) {
+    return (int) (entry >>> (shift(color) + 4)) & 0xf;
+  }
+
+  /**
+   * Returns the number of passed pawns for a player, or pawns that can neither be blocked nor
+   * captured by enemy pawns on their way to promotion.
+   *
+   * @param entry the packed entry returned by {@link #probe(Board)}
+   * @param color the player whose pawns to count
+   * @return the number of passed pawns
+   */
+  public static int numPassedPawns(long entry, Color color) {
+    return (int) (entry >>> (shift(color) + 8)) & 0xf;
+  }
+
+  /**
+   * Returns the penalty for a player's king having a missing or advanced pawn shield, before it is
+   * scaled down towards the endgame. Currently only white's pawn shield is scored, so the penalty
+   * for black is always zero.
+   *
+   * @param entry the packed entry returned by {@link #probe(Board)}
+   * @param color the player whose king shelter to look up
+   * @return the pawn shield penalty in centipawns, zero or positive
+   */
+  public static int pawnShieldPenalty(long entry, Color color) {
+    return (int) (entry >>> (shift(color) + 12)) & 0xff;
   }
 
   /**
-   * Inserts a record into the pawn/king hash table.
-   * 
-   * @param positionHash the Zobrist hash describing the pawns and kings
+   * Returns whether a player's king is castled, i.e. on one of the three files nearest a corner,
+   * and has no pawn of its own color on its file.
+   *
+   * @param entry the packed entry returned by {@link #probe(Board)}
+   * @param color the player whose king shelter to look up
+   * @return true if the king is castled on an open file, false otherwise
+   */
+  public static boolean isKingOnOpenFile(long entry, Color color) {
+    return ((entry >>> (shift(color) + 20)) & 1) != 0;
+  }
+
+  /**
+   * Returns the position of a player's half within a packed entry.
+   *
+   * @param color the player whose half to locate
+   * @return the number of bits to shift the entry right by
+   */
+  private static int shift(Color color) {
+    return color == Color.WHITE ? 0 : 32;
+  }
+
+  /**
+   * Computes the packed entry for the given pawns and kings. See the class definition for the
+   * packing.
+   *
    * @param pawnMaskWhite the 64-bit pawn bitboard mask for white
    * @param pawnMaskBlack the 64-bit pawn bitboard mask for black
-   * @param kingIndexWhite the index of the white king, 0-63
-   * @param kingIndexBlack the index of the black king, 0-63
+   * @param kingMaskWhite the 64-bit king bitboard mask for white
+   * @param kingMaskBlack the 64-bit king bitboard mask for black
+   * @return the 64-bit long packed entry
    */
-  public void put(long positionHash, long pawnMaskWhite, long pawnMaskBlack, int kingIndexWhite,
-      int kingIndexBlack) {
-    int index = this.index(positionHash);
-    this.data[index] = new PawnHashTableEntry(positionHash, pawnMaskWhite, pawnMaskBlack,
-        kingIndexWhite, kingIndexBlack);
+  private static long compute(long pawnMaskWhite, long pawnMaskBlack, long kingMaskWhite,
+      long kingMaskBlack) {
+    long white = computeHalf(Color.WHITE, pawnMaskWhite, pawnMaskBlack, kingMaskWhite);
+    long black = computeHalf(Color.BLACK, pawnMaskBlack, pawnMaskWhite, kingMaskBlack);
+    return white | (black << 32);
+  }
 
+  /**
+   * Computes one player's half of a packed entry.
+   *
+   * @param color the player whose half to compute
+   * @param myPawns the 64-bit pawn bitboard mask for the player
+   * @param oppPawns the 64-bit pawn bitboard mask for the opponent
+   * @param king the 64-bit king bitboard mask for the player
+   * @return the player's 32 bits of the entry, unshifted
+   */
+  private static long computeHalf(Color color, long myPawns, long oppPawns, long king) {
+    int numDoubledPawns = 0;
+    int numIsolatedPawns = 0;
     for (int fileIndex = 0; fileIndex < 8; fileIndex++) {
-      Bitboard fileBitboard = Bitboard.bitboardFromFile(fileIndex);
-      int filePawnsWhite = fileBitboard.intersection(pawnMaskWhite).numOccupied();
-      int filePawnsBlack = fileBitboard.intersection(pawnMaskBlack).numOccupied();
-      if (filePawnsWhite > 1) {
-        this.data[index].numDoubledPawnsWhite += filePawnsWhite;
+      int filePawns = Long.bitCount(Bitboard.fileMasks[fileIndex] & myPawns);
+      if (filePawns > 1) {
+        numDoubledPawns += filePawns;
       }
-      if (filePawnsBlack > 1) {
-        this.data[index].numDoubledPawnsBlack += filePawnsBlack;
+      if (filePawns >= 1 && (Bitboard.adjacentFileMasks[fileIndex] & myPawns) == 0) {
+        numIsolatedPawns += filePawns;
       }
+    }
 
-      Bitboard fileBitboardLeft = new Bitboard();
-      Bitboard fileBitboardRight = new Bitboard();
-      if (fileIndex > 0) {
-        fileBitboardLeft = new Bitboard(fileIndex - 1);
-      }
-      if (fileIndex < 7) {
-        fileBitboardRight = new Bitboard(fileIndex + 1);
+    int numPassedPawns = 0;
+    long[] passedPawnMasks = color == Color.WHITE ? passedPawnMasksWhite : passedPawnMasksBlack;
+    long pawns = myPawns;
+    while (pawns != 0) {
+      int pawnIndex = Long.numberOfTrailingZeros(pawns);
+      pawns ^= 1L << pawnIndex;
+      if ((passedPawnMasks[pawnIndex] & oppPawns) == 0) {
+        numPassedPawns++;
       }
-      if (filePawnsWhite >= 1) {
-        int filePawnsWhiteLeft = fileBitboardLeft.intersection(pawnMaskWhite).numOccupied();
-        int filePawnsWhiteRight = fileBitboardRight.intersection(pawnMaskWhite).numOccupied();
-        if (filePawnsWhiteLeft == 0 && filePawnsWhiteRight == 0) {
-          this.data[index].numIsolatedPawnsWhite += filePawnsWhite;
+    }
+
+    int pawnShieldPenalty = 0;
+    boolean kingOnOpenFile = false;
+    // The king can be missing if the position was set up without one.
+    if (king != 0) {
+      int kingIndex = Long.numberOfTrailingZeros(king);
+      int protectorsHome = 3;
+      int protectorsOneStep = 0;
+      if (color == Color.WHITE) {
+        if (kingIndex % 8 <= 2) {
+          protectorsHome = Long.bitCount(myPawns & pawnShieldQueenside[color.ordinal()]);
+          protectorsOneStep = Long.bitCount(myPawns & pawnShieldQueensideForward[color.ordinal()]);
+        } else if (kingIndex % 8 >= 5) {
+          protectorsHome = Long.bitCount(myPawns & pawnShieldKingside[color.ordinal()]);
+          protectorsOneStep = Long.bitCount(myPawns & pawnShieldKingsideForward[color.ordinal()]);
         }
       }
-      if (filePawnsBlack >= 1) {
-        int filePawnsBlackLeft = fileBitboardLeft.intersection(pawnMaskBlack).numOccupied();
-        int filePawnsBlackRight = fileBitboardRight.intersection(pawnMaskBlack).numOccupied();
-        if (filePawnsBlackLeft == 0 && filePawnsBlackRight == 0) {
-          this.data[index].numIsolatedPawnsBlack += filePawnsBlack;
-        }
+      if (protectorsHome + protectorsOneStep == 2) {
+        pawnShieldPenalty = 25 * protectorsHome + 50 * protectorsOneStep;
+      } else if (protectorsHome + protectorsOneStep == 1) {
+        pawnShieldPenalty = 50 * protectorsHome + 75 * protectorsOneStep;
+      } else if (protectorsHome + protectorsOneStep == 0) {
+        pawnShieldPenalty = 150;
       }
-    }
 
-    long whitePawns = pawnMaskWhite;
-    while (whitePawns != 0) {
-      int pawnIndex = Long.numberOfTrailingZeros(whitePawns);
-      long pawn = 1L << pawnIndex;
-      whitePawns ^= pawn;
-      if ((this.passedPawnMasksWhite[pawnIndex] & pawnMaskBlack) == 0) {
-        this.data[index].numPassedPawnsWhite++;
+      // Don't count an open file before castling, as we may get opportunities to capture pawns in
+      // the center.
+      if (kingIndex % 8 <= 2 || kingIndex % 8 >= 5) {
+        kingOnOpenFile = (myPawns & Bitboard.fileMasks[kingIndex % 8]) == 0;
       }
     }
-    long blackPawns = pawnMaskBlack;
-    while (blackPawns != 0) {
-      int pawnIndex = Long.numberOfTrailingZeros(blackPawns);
-      long pawn = 1L << pawnIndex;
-      blackPawns ^= pawn;
-      if ((this.passedPawnMasksBlack[pawnIndex] & pawnMaskWhite) == 0) {
-        this.data[index].numPassedPawnsBlack++;
-      }
+
+    long half = numDoubledPawns;
+    half |= numIsolatedPawns << 4;
+    half |= numPassedPawns << 8;
+    half |= pawnShieldPenalty << 12;
+    if (kingOnOpenFile) {
+      half |= 1L << 20;
     }
+    return half;
   }
 
   /**
-   * Retrieves a record from the pawn/king hash table.
-   * 
-   * @param positionHash the Zobrist hash describing the pawns and kings
-   * @return the {@link PawnHashTableEntry} stored in the hash table, or null if none is found
+   * The squares of the pawn shield in front of a king castled queenside, indexed by color ordinal.
    */
-  public PawnHashTableEntry get(long positionHash) {
-    int index = this.index(positionHash);
-    PawnHashTableEntry found = this.data[index];
-    if (found.positionHash != positionHash) {
-      return null;
-    }
-    return found;
-  }
+  public static long[] pawnShieldQueenside = new long[2];
+
+  /** The squares one step ahead of {@link #pawnShieldQueenside}, indexed by color ordinal. */
+  public static long[] pawnShieldQueensideForward = new long[2];
 
   /**
-   * Returns the array index where the position hash is found in {@link #data}.
-   * 
-   * @param positionHash the Zobrist hash describing the pawns and kings
-   * @return the array index where the position hash is found
+   * The squares of the pawn shield in front of a king castled kingside, indexed by color ordinal.
    */
-  private int index(long positionHash) {
-    // Unset the integer sign bit.
-    return ((int) positionHash & 0x7fffffff) % this.size;
-  }
+  public static long[] pawnShieldKingside = new long[2];
+
+  /** The squares one step ahead of {@link #pawnShieldKingside}, indexed by color ordinal. */
+  public static long[] pawnShieldKingsideForward = new long[2];
 
   /**
-   * Initializes a pawn/king hash table of a given size. Also precomputes the passed pawn mask
-   * tables to save computation time. The mask tables are given an index 0-63 of the pawn and
-   * return a 64-bit long mask listing the locations of enemy pawns that would prevent the given
-   * pawn from being passed.
-   * 
-   * @param size the number of hash entries to store in the table
+   * The passed pawn masks are given an index 0-63 of the pawn and return a 64-bit long mask listing
+   * the locations of enemy pawns that would prevent the given pawn from being passed.
    */
-  public PawnKingHashTable(int size) {
-    this.size = size;
-    this.data = new PawnHashTableEntry[size];
-    for (int i = 0; i < size; i++) {
-      this.data[i] = new PawnHashTableEntry();
-    }
+  private static long[] passedPawnMasksWhite = new long[64];
+  private static long[] passedPawnMasksBlack = new long[64];
+
+  static {
+    int white = Color.WHITE.ordinal();
+    int black = Color.BLACK.ordinal();
+    pawnShieldQueenside[white] = new Bitboard("a2", "b2", "c2").getData();
+    pawnShieldQueensideForward[white] = new Bitboard("a3", "b3", "c3").getData();
+    pawnShieldKingside[white] = new Bitboard("f2", "g2", "h2").getData();
+    pawnShieldKingsideForward[white] = new Bitboard("f3", "g3", "h3").getData();
+    pawnShieldQueenside[black] = new Bitboard(pawnShieldQueenside[white]).flip().getData();
+    pawnShieldQueensideForward[black] =
+        new Bitboard(pawnShieldQueensideForward[white]).flip().getData();
+    pawnShieldKingside[black] = new Bitboard(pawnShieldKingside[white]).flip().getData();
+    pawnShieldKingsideForward[black] =
+        new Bitboard(pawnShieldKingsideForward[white]).flip().getData();
 
-    this.passedPawnMasksWhite = new long[64];
-    this.passedPawnMasksBlack = new long[64];
     for (int i = 8; i < 56; i++) {
-      this.passedPawnMasksWhite[i] = 0;
-      for (int j = i; j < 56; j += 8) {
-        this.passedPawnMasksWhite[i] |= (1 << j);
-        if (i % 8 != 0) {
-          this.passedPawnMasksWhite[i] |= (1 << (j - 1));
-        }
-        if (i % 8 != 7) {
-          this.passedPawnMasksWhite[i] |= (1 << (j + 1));
-        }
-      }
-      this.passedPawnMasksBlack[i] = 0;
-      for (int j = i; j >= 8; j -= 8) {
-        this.passedPawnMasksBlack[i] |= (1 << j);
-        if (i % 8 != 0) {
-          this.passedPawnMasksBlack[i] |= (1 << (j - 1));
-        }
-        if (i % 8 != 7) {
-          this.passedPawnMasksBlack[i] |= (1 << (j + 1));
-        }
-      }
+      long files = Bitboard.fileMasks[i % 8] | Bitboard.adjacentFileMasks[i % 8];
+      // The ranks strictly ahead of the pawn from each player's perspective.
+      long ranksAheadWhite = ~0L << (8 * (i / 8 + 1));
+      long ranksAheadBlack = ~(~0L << (8 * (i / 8)));
+      passedPawnMasksWhite[i] = files & ranksAheadWhite;
+      passedPawnMasksBlack[i] = files & ranksAheadBlack;
     }
   }
 
-  /** The number of entries allocated to the hash table. */
-  private int size = 0;
+  /** The packed entry of an empty slot. No real entry sets bits 21-31 of either half. */
+  private static long EMPTY = -1L;
 
-  /**
-   * The array holding the potential hash table entries. Note that contrary to
-   * {@link TranspositionTable} we use an array of objects rather than packed bits. This is because
-   * we use far fewer hash keys for the pawn/king table so memory is not as important.
-   */
-  private PawnHashTableEntry[] data;
+  private int mask;
+
+  /** The position hashes of the entries, by slot. */
+  private long[] keys;
+
+  /** The packed entries, by slot. See the class definition for the packing. */
+  private long[] data;
 
-  private long[] passedPawnMasksWhite;
-  private long[] passedPawnMasksBlack;
+  private long probes = 0;
+  private long hits = 0;
 }
@@ -0,0 +1,333 @@
+package tactician;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class counts the leaf nodes of the game tree from a position to a given depth, which is
+ * known as perft. The counts for many positions are published, so comparing against them is how
+ * we validate changes to the move generator; see {@link tactician.Test.TestPerformance}. This
+ * class makes it practical to go several plies deeper than the unit tests, from the command line
+ * with {@link #main(String[])} or from a GUI with the UCI command {@code go perft <depth>}.
+ *
+ * <p>Four things make it faster than a plain recursion over {@link Board#legalMoves()}:
+ *
+ * <p>Bulk counting: the legal moves one ply from the leaves are counted rather than made and
+ * recursed into.
+ *
+ * <p>Single copies: {@link Board#legalMoves()} copies the board for each pseudo-legal move to see
+ * whether it leaves the king in check, and a plain recursion then copies it again to make the
+ * move. Here the copy used for the legality check is the one that is recursed into.
+ *
+ * <p>Hashing: subtree counts can be cached in a {@link PerftHashTable} by position hash and depth,
+ * so that transpositions are only counted once.
+ *
+ * <p>Parallelism: the tree can be split into {@link ForkJoinPool} tasks, one for each move at the
+ * root and, below each of those, one for each move at the second ply, since the root alone has
+ * too few moves to keep many cores busy and its subtrees vary a lot in size. Each task counts its
+ * subtree on its own copies of the board, and the counts are summed as the tasks are joined. The
+ * tasks share the hash table, which needs no locking; see {@link PerftHashTable}.
+ *
+ * <p>The divide output lists the count below each legal root move, which narrows down a wrong
+ * total to the move where it goes wrong when compared against another engine.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Perft">Perft</a>
+ * @author Phil Leszczynski
+ */
+public class Perft {
+  /** Initializes a single-threaded perft counter without a hash table. */
+  public Perft() {
+    this(0, 1);
+  }
+
+  /**
+   * Initializes a single-threaded perft counter with a hash table of subtree counts.
+   *
+   * @param hashSize the minimum number of subtree counts to store in the hash table, or 0 for no
+   *        hash table
+   */
+  public Perft(int hashSize) {
+    this(hashSize, 1);
+  }
+
+  /**
+   * Initializes a perft counter with a hash table of subtree counts and a pool of threads to count
+   * with.
+   *
+   * @param hashSize the minimum number of subtree counts to store in the hash table, or 0 for no
+   *        hash table
+   * @param threads the number of threads to count with, or 1 to count on the calling thread
+   */
+  public Perft(int hashSize, int threads) {
+    this.hashTable = hashSize > 0 ? new PerftHashTable(hashSize) : null;
+    this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+  }
+
+  /**
+   * Stops the threads of the pool, if any. The counter must not be used afterwards. The threads
+   * do not keep the program from exiting, so this is only needed to free them early.
+   */
+  public void shutdown() {
+    if (this.pool != null) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * Returns the number of leaf nodes from a given board position and search depth.
+   *
+   * @param board the board containing the position
+   * @param depth the depth to search in plies, at least 0
+   * @return the number of leaf nodes
+   * @throws IllegalArgumentException if the depth is negative
+   */
+  public long perft(Board board, int depth) {
+    if (depth < 0) {
+      throw new IllegalArgumentException("Perft depth must be at least 0 but got " + depth);
+    }
+    if (this.pool != null && depth >= PARALLEL_DEPTH) {
+      return this.pool.invoke(new PerftTask(board, depth, SPLIT_PLIES));
+    }
+    return this.count(board, depth);
+  }
+
+  /**
+   * Returns the number of leaf nodes from a given board position and search depth, counting on the
+   * calling thread.
+   *
+   * @param board the board containing the position
+   * @param depth the depth to search in plies
+   * @return the number of leaf nodes
+   */
+  private long count(Board board, int depth) {
+    if (depth == 0) {
+      return 1;
+    }
+    boolean useHashTable = this.hashTable != null && depth >= 2;
+    if (useHashTable) {
+      long nodes = this.hashTable.get(board.positionHash, depth);
+      if (nodes != PerftHashTable.NOT_FOUND) {
+        return nodes;
+      }
+    }
+    long nodes = 0;
+    for (Move move : board.legalMovesFast(false)) {
+      Board copy = makeLegalMove(board, move);
+      if (copy == null) {
+        continue;
+      }
+      if (depth == 1) {
+        nodes++;
+      } else {
+        nodes += this.count(copy, depth - 1);
+      }
+    }
+    if (useHashTable) {
+      this.hashTable.put(board.positionHash, depth, nodes);
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns the number of leaf nodes below each legal move from a given board position.
+   *
+   * @param board the board containing the position
+   * @param depth the depth to search in plies, at least 1
+   * @return the number of leaf nodes below each legal move, in the order the moves were generated
+   * @throws IllegalArgumentException if the depth is less than 1
+   */
+  public Map<Move, Long> divide(Board board, int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("Divide depth must be at least 1 but got " + depth);
+    }
+    Map<Move, Long> result = new LinkedHashMap<Move, Long>();
+    if (this.pool != null && depth >= PARALLEL_DEPTH) {
+      // The root moves are split here, so each task only splits the second ply.
+      Map<Move, PerftTask> tasks = new LinkedHashMap<Move, PerftTask>();
+      for (Move move : board.legalMovesFast(false)) {
+        Board copy = makeLegalMove(board, move);
+        if (copy != null) {
+          tasks.put(move, new PerftTask(copy, depth - 1, SPLIT_PLIES - 1));
+        }
+      }
+      this.pool.invoke(new RecursiveTask<Void>() {
+        @Override
+        protected Void compute() {
+          ForkJoinTask.invokeAll(tasks.values());
+          return null;
+        }
+      });
+      for (Map.Entry<Move, PerftTask> entry : tasks.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().join());
+      }
+      return result;
+    }
+    for (Move move : board.legalMovesFast(false)) {
+      Board copy = makeLegalMove(board, move);
+      if (copy != null) {
+        result.put(move, this.count(copy, depth - 1));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Formats the result of {@link #divide(Board, int)}: a line with the count below each legal move
+   * such as "e2e4: 20", then an empty line, then the total as "Nodes searched: 400". This is the
+   * format most engines use, so the output can be compared line by line.
+   *
+   * @param divide the number of leaf nodes below each legal move
+   * @return the lines of the divide output
+   */
+  public static ArrayList<String> divideLines(Map<Move, Long> divide) {
+    ArrayList<String> lines = new ArrayList<String>();
+    long total = 0;
+    for (Map.Entry<Move, Long> entry : divide.entrySet()) {
+      lines.add(entry.getKey() + ": " + entry.getValue());
+      total += entry.getValue();
+    }
+    lines.add("");
+    lines.add("Nodes searched: " + total);
+    return lines;
+  }
+
+  /**
+   * Makes a pseudo-legal move on a copy of the board if it is legal, that is if it does not leave
+   * the moving player's king in check.
+   *
+   * @param board the board to make the move from, which is left unchanged
+   * @param move the pseudo-legal move to make
+   * @return a copy of the board with the move made, or null if the move is not legal
+   */
+  private static Board makeLegalMove(Board board, Move move) {
+    Board copy = new Board(board);
+    copy.move(move);
+    // Go back to the original player to see if they're in check.
+    copy.turn = Color.flip(copy.turn);
+    if (copy.isInCheck()) {
+      return null;
+    }
+    copy.turn = Color.flip(copy.turn);
+    return copy;
+  }
+
+  /**
+   * Runs perft from the command line and prints the divide output, the time taken, and the speed.
+   *
+   * @param args the depth, optionally followed by a position in FEN notation (default the initial
+   *        position), and optionally the options {@code -hash <entries>} to use a hash table and
+   *        {@code -threads <threads>} to count with a number of threads other than the number of
+   *        processors
+   */
+  public static void main(String[] args) {
+    int depth = -1;
+    int hashSize = 0;
+    int threads = Runtime.getRuntime().availableProcessors();
+    String fenstring = "";
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-hash") && i + 1 < args.length) {
+        hashSize = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (depth < 0) {
+        depth = Integer.parseInt(args[i]);
+      } else {
+        fenstring += (fenstring.isEmpty() ? "" : " ") + args[i];
+      }
+    }
+    if (depth < 1) {
+      System.err.println("Usage: Perft <depth> [fen] [-hash <entries>] [-threads <threads>]");
+      System.exit(1);
+    }
+    Board board = fenstring.isEmpty() ? new Board() : new Board(fenstring);
+    Perft perft = new Perft(hashSize, threads);
+    long start = System.currentTimeMillis();
+    Map<Move, Long> divide = perft.divide(board, depth);
+    long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+    for (String line : divideLines(divide)) {
+      System.out.println(line);
+    }
+    long nodes = 0;
+    for (long count : divide.values()) {
+      nodes += count;
+    }
+    System.out.println("Time: " + elapsed + " ms (" + nodes * 1000 / elapsed + " nodes/s)");
+    perft.shutdown();
+  }
+
+  /**
+   * A task counting the leaf nodes below a position. Down to {@link #SPLIT_PLIES} plies from the
+   * root it forks a subtask for each legal move and sums their counts; below that it counts on
+   * its own thread.
+   */
+  private class PerftTask extends RecursiveTask<Long> {
+    /**
+     * Initializes a task counting the leaf nodes below a position.
+     *
+     * @param board the board containing the position, owned by the task
+     * @param depth the depth to search in plies
+     * @param splitPlies the number of plies below this one at which to fork subtasks
+     */
+    private PerftTask(Board board, int depth, int splitPlies) {
+      this.board = board;
+      this.depth = depth;
+      this.splitPlies = splitPlies;
+    }
+
+    @Override
+    protected Long compute() {
+      if (this.splitPlies <= 0 || this.depth < PARALLEL_DEPTH) {
+        return Perft.this.count(this.board, this.depth);
+      }
+      PerftHashTable hashTable = Perft.this.hashTable;
+      if (hashTable != null) {
+        long nodes = hashTable.get(this.board.positionHash, this.depth);
+        if (nodes != PerftHashTable.NOT_FOUND) {
+          return nodes;
+        }
+      }
+      List<PerftTask> subtasks = new ArrayList<PerftTask>();
+      for (Move move : this.board.legalMovesFast(false)) {
+        Board copy = makeLegalMove(this.board, move);
+        if (copy != null) {
+          subtasks.add(new PerftTask(copy, this.depth - 1, this.splitPlies - 1));
+        }
+      }
+      ForkJoinTask.invokeAll(subtasks);
+      long nodes = 0;
+      for (PerftTask subtask : subtasks) {
+        nodes += subtask.join();
+      }
+      if (hashTable != null) {
+        hashTable.put(this.board.positionHash, this.depth, nodes);
+      }
+      return nodes;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    private Board board;
+    private int depth;
+    private int splitPlies;
+  }
+
+  /** The largest depth that fits in a {@link PerftHashTable} entry. */
+  public static int MAX_DEPTH = 255;
+
+  /**
+   * The smallest depth worth splitting into tasks. Shallower subtrees are counted faster than a
+   * task can be scheduled.
+   */
+  private static int PARALLEL_DEPTH = 3;
+
+  /** The number of plies from the root, counting the root itself, that are split into tasks. */
+  private static int SPLIT_PLIES = 2;
+
+  private PerftHashTable hashTable;
+  private ForkJoinPool pool;
+}
@@ -0,0 +1,88 @@
+package tactician;
+
+/**
+ * This class is a hash table of perft subtree counts, keyed by the Zobrist hash of the position
+ * (see {@link Board#positionHash}) and the depth. Perft trees are full of transpositions, for
+ * example 1. e4 e5 2. Nf3 and 1. Nf3 e5 2. e4 reach the same position, so caching the number of
+ * leaf nodes below each position saves most of the work at deep depths.
+ *
+ * <p>As in {@link EvaluationHashTable} the table is lossy, with a single slot per position hash
+ * found with a mask, and the keys and values are kept in two primitive arrays. The depth is
+ * packed into the low 8 bits of the value and the count into the rest, so that a position found
+ * at a different depth does not match.
+ *
+ * <p>The table is shared by the threads of a parallel perft without any locking. A slot is two
+ * separate longs, so another thread can overwrite one of them between our reads, or read one
+ * before our write of the other. To detect such a torn entry we store the key XORed with the
+ * value rather than the key itself: the key we read back only matches if the value we read back
+ * is the one it was stored with. A lost or torn entry just costs a recount of the subtree.
+ *
+ * @author Phil Leszczynski
+ */
+public class PerftHashTable {
+  /**
+   * Initializes a perft hash table with at least the given number of slots, rounded up to a power
+   * of two.
+   *
+   * @param size the minimum number of subtree counts to store in the table
+   */
+  public PerftHashTable(int size) {
+    int capacity = Integer.highestOneBit(Math.max(size, 1));
+    if (capacity < size) {
+      capacity <<= 1;
+    }
+    this.mask = capacity - 1;
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+  }
+
+  /**
+   * Returns the number of slots in the table.
+   *
+   * @return the number of slots, a power of two
+   */
+  public int size() {
+    return this.keys.length;
+  }
+
+  /**
+   * Retrieves a subtree count from the table.
+   *
+   * @param positionHash the Zobrist hash of the position
+   * @param depth the depth of the subtree, 1-255
+   * @return the number of leaf nodes stored for the position and depth, or {@link #NOT_FOUND} if
+   *         they are not in the table
+   */
+  public long get(long positionHash, int depth) {
+    int index = (int) positionHash & this.mask;
+    long value = this.values[index];
+    long key = this.keys[index] ^ value;
+    // Empty slots have a depth of 0, which is never looked up.
+    if (key != positionHash || (value & 0xff) != depth) {
+      return NOT_FOUND;
+    }
+    return value >>> 8;
+  }
+
+  /**
+   * Inserts a subtree count into the table, overwriting any count previously stored in the same
+   * slot.
+   *
+   * @param positionHash the Zobrist hash of the position
+   * @param depth the depth of the subtree, 1-255
+   * @param nodes the number of leaf nodes in the subtree
+   */
+  public void put(long positionHash, int depth, long nodes) {
+    int index = (int) positionHash & this.mask;
+    long value = (nodes << 8) | depth;
+    this.values[index] = value;
+    this.keys[index] = positionHash ^ value;
+  }
+
+  /** The value returned by {@link #get(long, int)} when the subtree count is not in the table. */
+  public static long NOT_FOUND = -1;
+
+  private int mask;
+  private long[] keys;
+  private long[] values;
+}
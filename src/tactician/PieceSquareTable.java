@@ -0,0 +1,155 @@
+package tactician;
+
+/**
+ * This class holds the piece-square tables used by the static evaluation. For each color, piece,
+ * and square it lists the value in centipawns of having that piece on that square, once for the
+ * middlegame and once for the endgame. The values include the material value of the piece, so the
+ * sum over all the pieces on the board covers both material and piece placement.
+ *
+ * <p>Since the value of a piece depends only on its own square, {@link Board} keeps running sums
+ * of these tables that it updates as pieces move, rather than recomputing them on every
+ * evaluation. It also keeps a game phase counter using {@link #phase(Piece)}, which the evaluation
+ * uses to taper between the middlegame and endgame sums. See {@link Evaluation#fitness(Board)}.
+ *
+ * <p>Pawns are scored by their rank and how close they are to the center files; for example a
+ * central pawn is worth more in the middlegame while an edge pawn is worth more in the endgame as
+ * it is harder for the opposing king to stop. Kings are scored by their distance from the home
+ * rank and by their file: they belong in a home corner in the middlegame but near the center in
+ * the endgame.
+ *
+ * <p>The tables are built from a set of {@link EvaluationParameters}. Each board refers to the
+ * tables its sums are computed with, {@link #DEFAULT} unless another set is given through
+ * {@link Board#setPieceSquareTable(PieceSquareTable)}.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Piece-Square+Tables">Piece-Square
+ *      Tables</a>
+ * @see <a href="http://chessprogramming.wikispaces.com/Tapered+Eval">Tapered Eval</a>
+ * @author Phil Leszczynski
+ */
+public class PieceSquareTable {
+  /**
+   * Builds the piece-square tables from the material values, pawn tables, and king placement
+   * constants of a set of evaluation parameters.
+   *
+   * @param parameters the evaluation parameters to build the tables from
+   */
+  public PieceSquareTable(EvaluationParameters parameters) {
+    this.parameters = parameters;
+    for (Color color : Color.values()) {
+      for (Piece piece : Piece.values()) {
+        for (int index = 0; index < 64; index++) {
+          int midgameValue = parameters.materialValue[piece.ordinal()];
+          int endgameValue = parameters.materialValue[piece.ordinal()];
+          if (piece == Piece.PAWN) {
+            // The pawn tables already include the material value of the pawn.
+            int rank = relativeRank(color, index);
+            int centrality = Math.min(index % 8, 7 - index % 8);
+            midgameValue = parameters.pawnTableMidgame[rank][centrality];
+            endgameValue = parameters.pawnTableEndgame[rank][centrality];
+          } else if (piece == Piece.KING) {
+            int placement = this.kingPlacement(color, index);
+            midgameValue += Math.round(0.6f * placement);
+            endgameValue += Math.round(-0.4f * placement);
+          }
+          this.midgame[color.ordinal()][piece.ordinal()][index] = midgameValue;
+          this.endgame[color.ordinal()][piece.ordinal()][index] = endgameValue;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the middlegame value of a piece on a square, including its material value.
+   *
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the square, 0-63
+   * @return the middlegame value in centipawns from the perspective of the piece's owner
+   */
+  public int midgame(Color color, Piece piece, int index) {
+    return this.midgame[color.ordinal()][piece.ordinal()][index];
+  }
+
+  /**
+   * Returns the endgame value of a piece on a square, including its material value.
+   *
+   * @param color the color of the piece
+   * @param piece the type of piece
+   * @param index the index of the square, 0-63
+   * @return the endgame value in centipawns from the perspective of the piece's owner
+   */
+  public int endgame(Color color, Piece piece, int index) {
+    return this.endgame[color.ordinal()][piece.ordinal()][index];
+  }
+
+  /**
+   * Returns the evaluation parameters the tables were built from.
+   *
+   * @return the evaluation parameters
+   */
+  public EvaluationParameters getParameters() {
+    return this.parameters;
+  }
+
+  /**
+   * Returns how much a piece counts towards the game phase. The phase is the sum over all the
+   * knights, bishops, rooks, and queens on the board, and is {@link #PHASE_MAX} at the start of the
+   * game. Pawns and kings do not count.
+   *
+   * @param piece the type of piece
+   * @return the weight of the piece in the game phase
+   */
+  public static int phase(Piece piece) {
+    return phase[piece.ordinal()];
+  }
+
+  /**
+   * Returns the untapered placement score of a king on a square: a penalty for each rank it has
+   * advanced from its home rank and a penalty for central files. The middlegame table holds 0.6
+   * times this score and the endgame table holds -0.4 times it, so that the king is drawn to a home
+   * corner early on and to the center late in the game.
+   *
+   * @param color the color of the king
+   * @param index the index of the king's square, 0-63
+   * @return the placement score in centipawns, before tapering
+   */
+  public int kingPlacement(Color color, int index) {
+    int distanceFromHomeRank = relativeRank(color, index);
+    return -this.parameters.kingRankFactor * distanceFromHomeRank
+        + this.parameters.kingFile[index % 8];
+  }
+
+  /**
+   * Returns the rank of a square from the perspective of the given player, where 0 is that
+   * player's home rank.
+   *
+   * @param color the player from whose perspective to count
+   * @param index the index of the square, 0-63
+   * @return the relative rank, 0-7
+   */
+  private static int relativeRank(Color color, int index) {
+    if (color == Color.WHITE) {
+      return index / 8;
+    }
+    return 7 - index / 8;
+  }
+
+  /** The phase at the start of the game, see {@link #phase(Piece)}. */
+  public static int PHASE_MAX = 24;
+
+  /** The tables built from the default evaluation parameters. */
+  public static PieceSquareTable DEFAULT = new PieceSquareTable(new EvaluationParameters());
+
+  private static int[] phase = new int[Piece.values().length];
+
+  static {
+    phase[Piece.BISHOP.ordinal()] = 1;
+    phase[Piece.KNIGHT.ordinal()] = 1;
+    phase[Piece.ROOK.ordinal()] = 2;
+    phase[Piece.QUEEN.ordinal()] = 4;
+  }
+
+  private EvaluationParameters parameters;
+  private int[][][] midgame = new int[2][Piece.values().length][64];
+  private int[][][] endgame = new int[2][Piece.values().length][64];
+}
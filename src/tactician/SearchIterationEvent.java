@@ -0,0 +1,54 @@
+package tactician;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is a Java Flight Recorder event for one iteration of the iterative deepening in
+ * {@link Brain#getMove(Board, int)}. Its duration is the time the iteration took, so a slow
+ * search in a recording can be traced to the iteration where the time went, and to whether the
+ * engine kept changing its mind. When no recording is running the event is disabled and costs
+ * only a short-lived object and a check per iteration.
+ *
+ * <p>Record it with for example
+ * {@code java -XX:StartFlightRecording:filename=search.jfr -jar tactician.jar}, and view it in
+ * JDK Mission Control or with {@code jfr print --events tactician.SearchIteration search.jfr}.
+ *
+ * @author Phil Leszczynski
+ */
+@Name("tactician.SearchIteration")
+@Label("Search Iteration")
+@Category({"Tactician", "Search"})
+@Description("An iteration of the iterative deepening search")
+public class SearchIterationEvent extends Event {
+  /** The depth of the iteration in plies. */
+  @Label("Depth")
+  public int depth;
+
+  /** The greatest distance from the root reached so far, see {@link SearchStatistics}. */
+  @Label("Selective Depth")
+  public int selectiveDepth;
+
+  /** The number of nodes searched by this iteration. */
+  @Label("Nodes")
+  public long nodes;
+
+  /** The best move found by the iteration, in long algebraic notation. */
+  @Label("Best Move")
+  public String bestMove;
+
+  /** The score of the best move in centipawns, see {@link Evaluation#FITNESS_LARGE}. */
+  @Label("Score")
+  public int fitness;
+
+  /** The number of times a new best move was found at the root after the first move searched. */
+  @Label("Best Move Changes")
+  public int bestMoveChanges;
+
+  /** Whether the best move differs from the one found by the previous iteration. */
+  @Label("Best Move Changed")
+  public boolean bestMoveChanged;
+}
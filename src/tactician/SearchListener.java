@@ -0,0 +1,39 @@
+package tactician;
+
+import java.util.List;
+
+/**
+ * This interface receives progress reports from a {@link Brain} while it searches, see
+ * {@link Brain#setSearchListener(SearchListener)}. The methods are called on the searching thread
+ * in the middle of the search, so they should return quickly. {@link UciInfoListener} turns the
+ * reports into the {@code info} lines of the Universal Chess Interface.
+ *
+ * @author Phil Leszczynski
+ */
+public interface SearchListener {
+  /**
+   * Called after each iteration of the iterative deepening completes.
+   *
+   * @param depth the depth of the iteration in plies
+   * @param selectiveDepth the greatest distance from the root reached so far, including check
+   *        extensions and the quiescent search
+   * @param fitness the score of the best move from the perspective of the player to move at the
+   *        root, see {@link Evaluation#FITNESS_LARGE} for how mate scores are represented
+   * @param nodes the number of nodes searched so far
+   * @param millis the time since the start of the search in milliseconds
+   * @param hashfull how full the transposition table is, in permille
+   * @param principalVariation the best move followed by the expected replies
+   */
+  void iterationComplete(int depth, int selectiveDepth, int fitness, long nodes, long millis,
+      int hashfull, List<Move> principalVariation);
+
+  /**
+   * Called when the search starts on a move at the root, once the search has been running for a
+   * second. Shorter searches do not report their root moves.
+   *
+   * @param depth the depth of the current iteration in plies
+   * @param move the root move being searched
+   * @param moveNumber the position of the move in the search order, starting at 1
+   */
+  void currentMove(int depth, Move move, int moveNumber);
+}
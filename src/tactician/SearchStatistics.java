@@ -0,0 +1,149 @@
+package tactician;
+
+/**
+ * This class collects statistics about a search, so that changes to the search can be judged by
+ * more than the move it ends up playing. The raw counters are plain public longs that
+ * {@link Brain} increments directly, which costs next to nothing. Each brain searches on a single
+ * thread and owns its statistics, so no synchronization is needed. At the end of each iteration
+ * of the iterative deepening the brain calls {@link #endIteration()}, which records how many nodes
+ * that iteration took; the derived figures below are computed from the counters on demand.
+ *
+ * <p>The figures of interest are the share of nodes spent in the quiescent search, the fraction
+ * of transposition table probes that find an entry, the fraction of beta cutoffs caused by the
+ * first move searched (a measure of move ordering, ideally above 90%), and the effective branching
+ * factor, or how many times more nodes each iteration takes than the previous one.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Branching+Factor">Branching Factor</a>
+ * @author Phil Leszczynski
+ */
+public class SearchStatistics {
+  /** Resets all of the counters, at the start of a search. */
+  public void reset() {
+    this.nodes = 0;
+    this.quiescentNodes = 0;
+    this.transpositionProbes = 0;
+    this.transpositionHits = 0;
+    this.transpositionStores = 0;
+    this.betaCutoffs = 0;
+    this.betaCutoffsFirstMove = 0;
+    this.selectiveDepth = 0;
+    this.iterations = 0;
+    this.previousIterationNodes = 0;
+    this.lastIterationNodes = 0;
+    this.nodesAtIterationStart = 0;
+  }
+
+  /** Records the end of an iteration of the iterative deepening. */
+  public void endIteration() {
+    this.iterations++;
+    this.previousIterationNodes = this.lastIterationNodes;
+    this.lastIterationNodes = this.nodes - this.nodesAtIterationStart;
+    this.nodesAtIterationStart = this.nodes;
+  }
+
+  /**
+   * Returns the number of iterations completed since the last reset.
+   *
+   * @return the number of iterations
+   */
+  public int getIterations() {
+    return this.iterations;
+  }
+
+  /**
+   * Returns the fraction of the nodes that were searched by the quiescent search.
+   *
+   * @return the quiescent node share between 0 and 1, or 0 if no nodes were searched
+   */
+  public double quiescentNodeShare() {
+    return ratio(this.quiescentNodes, this.nodes);
+  }
+
+  /**
+   * Returns the fraction of transposition table probes that found an entry.
+   *
+   * @return the hit rate between 0 and 1, or 0 if there were no probes
+   */
+  public double transpositionHitRate() {
+    return ratio(this.transpositionHits, this.transpositionProbes);
+  }
+
+  /**
+   * Returns the fraction of beta cutoffs that were caused by the first move searched at the node.
+   *
+   * @return the first move cutoff rate between 0 and 1, or 0 if there were no cutoffs
+   */
+  public double firstMoveCutoffRate() {
+    return ratio(this.betaCutoffsFirstMove, this.betaCutoffs);
+  }
+
+  /**
+   * Returns the effective branching factor: the number of nodes searched in the last iteration
+   * divided by the number searched in the iteration before it.
+   *
+   * @return the effective branching factor, or 0 if fewer than two iterations have completed
+   */
+  public double effectiveBranchingFactor() {
+    return ratio(this.lastIterationNodes, this.previousIterationNodes);
+  }
+
+  /**
+   * Returns the ratio of two counters, or 0 if the denominator is 0.
+   *
+   * @param numerator the numerator
+   * @param denominator the denominator
+   * @return the ratio
+   */
+  private static double ratio(long numerator, long denominator) {
+    if (denominator == 0) {
+      return 0;
+    }
+    return (double) numerator / denominator;
+  }
+
+  /**
+   * Returns a one-line summary of the statistics, for example "nodes 193513 qnodes 41% tthits 23%
+   * ttstores 80512 cutoffs 51204 firstmove 91% ebf 4.12". Percentages are rounded to whole
+   * numbers.
+   */
+  @Override
+  public String toString() {
+    return "nodes " + this.nodes + " qnodes " + Math.round(100 * this.quiescentNodeShare())
+        + "% tthits " + Math.round(100 * this.transpositionHitRate()) + "% ttstores "
+        + this.transpositionStores + " cutoffs " + this.betaCutoffs + " firstmove "
+        + Math.round(100 * this.firstMoveCutoffRate()) + "% ebf "
+        + String.format("%.2f", this.effectiveBranchingFactor());
+  }
+
+  /** The number of positions reached by making a move, in any part of the search. */
+  public long nodes = 0;
+
+  /** The number of nodes reached by a move in the quiescent search. */
+  public long quiescentNodes = 0;
+
+  /** The number of transposition table probes in the alpha-beta search. */
+  public long transpositionProbes = 0;
+
+  /** The number of transposition table probes that found an entry. */
+  public long transpositionHits = 0;
+
+  /** The number of entries stored in the transposition table. */
+  public long transpositionStores = 0;
+
+  /** The number of nodes in the alpha-beta search where a move scored at least beta. */
+  public long betaCutoffs = 0;
+
+  /** The number of beta cutoffs caused by the first move searched at the node. */
+  public long betaCutoffsFirstMove = 0;
+
+  /**
+   * The greatest distance in plies from the root reached by the search, including check
+   * extensions and the quiescent search.
+   */
+  public int selectiveDepth = 0;
+
+  private int iterations = 0;
+  private long previousIterationNodes = 0;
+  private long lastIterationNodes = 0;
+  private long nodesAtIterationStart = 0;
+}
@@ -2,10 +2,12 @@ package tactician;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Map;
+
+import javax.management.JMException;
 
 import tactician.Board;
 import tactician.Brain;
@@ -30,56 +32,130 @@ import tactician.Brain;
  * @author Phil Leszczynski
  */
 public class Tactician {
-  /** Deletes the log file. */
-  public static void logClear() {
-    try {
-      new File(logFilename).delete();
-    } catch (Exception e) {
-      System.err.println("Could not delete file: " + logFilename);
-    }
-  }
-
   /**
-   * Appends a line to the log file.
+   * Appends a line to the log file at the info level, see {@link Logger}. The line is written in
+   * the background, so this returns immediately.
    * 
    * @param line the text to append to the log file, followed by a newline
    */
   public static void log(String line) {
+    logger.info(line);
+  }
+
+  /**
+   * Sets the log file, emptying it. The lines already logged to the previous file are still
+   * written to it.
+   * 
+   * @param path the path of the log file
+   */
+  public static void setLogFile(String path) {
+    Logger previous = logger;
+    logger = new Logger(path, previous.getLevel());
+    previous.close();
+  }
+
+  /**
+   * Sets the most detailed level written to the log, see {@link Logger.Level}. Unknown levels are
+   * ignored.
+   * 
+   * @param level the name of the level, in any case
+   */
+  public static void setLogLevel(String level) {
     try {
-      FileWriter writer = new FileWriter(logFilename, true);
-      writer.write(line + "\n");
-      writer.close();
-    } catch (IOException e) {
-      System.err.println("Could not write message to log file: " + line);
+      logger.setLevel(Logger.Level.valueOf(level.toUpperCase()));
+    } catch (IllegalArgumentException e) {
+      log("Unknown log level: " + level);
     }
   }
 
   /**
    * Responds to a command from the chess GUI. This just prints the line to standard out and also
-   * appends the line to the log file.
+   * appends the line to the log file, after printing it so the GUI gets it first.
    * 
    * @param line the response to the GUI command
    */
   public static void respond(String line) {
-    log("> " + line);
     System.out.println(line);
+    log("> " + line);
   }
 
   /**
-   * Logs the principal variation of a given move.
-   * 
-   * @param move the move from where the principal variation begins
+   * Logs the principal variation of the last search in algebraic notation, see
+   * {@link Brain#getPrincipalVariation()}.
    */
-  public static void logPrincipalVariation(Move move) {
-    ArrayList<Move> principalVariation = brain.getPrincipalVariation(board, move);
+  public static void logPrincipalVariation() {
+    Board copy = new Board(board);
     ArrayList<String> movesAlgebraic = new ArrayList<String>();
-    for (Move pvMove : principalVariation) {
-      movesAlgebraic.add(AlgebraicNotation.moveToAlgebraic(board, pvMove));
-      board.move(pvMove);
+    for (Move pvMove : brain.getPrincipalVariation()) {
+      movesAlgebraic.add(AlgebraicNotation.moveToAlgebraic(copy, pvMove));
+      copy.move(pvMove);
     }
     log("PV: " + movesAlgebraic);
   }
 
+  /**
+   * Loads a neural network for the evaluation, see {@link NeuralNetwork}. If the file cannot be
+   * loaded, or if the path is empty or "<empty>", the hand-crafted evaluation is used instead.
+   * 
+   * @param path the path of the network weights file
+   */
+  public static void setEvalFile(String path) {
+    neuralNetwork = null;
+    if (!path.isEmpty() && !path.equals("<empty>")) {
+      try {
+        neuralNetwork = new NeuralNetwork(path);
+        log("Loaded network " + path + " with hidden size " + neuralNetwork.getHiddenSize());
+      } catch (IOException e) {
+        log("Could not load network: " + e.getMessage());
+      }
+    }
+    board.setNeuralNetwork(neuralNetwork);
+    // The cached scores came from the previous evaluation.
+    brain.getEvaluation().getEvaluationHashTable().clear();
+  }
+
+  /**
+   * Loads the evaluation parameters from a file, see {@link EvaluationParameters}, and gives them
+   * to both the evaluation and the board's piece-square tables. If the file cannot be loaded, or
+   * if the path is empty or "<empty>", the default parameters are used instead.
+   * 
+   * @param path the path of the parameters file
+   */
+  public static void setEvalParams(String path) {
+    EvaluationParameters parameters = new EvaluationParameters();
+    if (!path.isEmpty() && !path.equals("<empty>")) {
+      try {
+        parameters = EvaluationParameters.load(path);
+        log("Loaded evaluation parameters " + path);
+      } catch (IOException e) {
+        log("Could not load evaluation parameters: " + e.getMessage());
+      }
+    }
+    brain.getEvaluation().setParameters(parameters);
+    board.setPieceSquareTable(new PieceSquareTable(parameters));
+  }
+
+  /**
+   * Parses the depth given with a UCI command. A GUI can send anything, so a depth that is not a
+   * number or is out of range is logged rather than allowed to stop the engine.
+   * 
+   * @param text the depth as sent by the GUI
+   * @param maxDepth the largest allowed depth
+   * @return the depth, or -1 if it is not a number from 1 to maxDepth
+   */
+  private static int parseDepth(String text, int maxDepth) {
+    try {
+      int depth = Integer.parseInt(text.trim());
+      if (depth >= 1 && depth <= maxDepth) {
+        return depth;
+      }
+    } catch (NumberFormatException e) {
+      // Logged below.
+    }
+    log("Invalid depth " + text.trim() + ", expected 1 to " + maxDepth);
+    return -1;
+  }
+
   /**
    * Interprets a command as specified by the Universal Chess Interface and respond to it. Logs the
    * command as well. If the command is not understood, do nothing and wait for the next command.
@@ -91,35 +167,109 @@ public class Tactician {
     if (line.equals("uci")) {
       respond("id name Tactician");
       respond("id author Phil Leszczynski");
+      respond("option name EvalFile type string default <empty>");
+      respond("option name EvalParams type string default <empty>");
+      respond("option name LogFile type string default " + DEFAULT_LOG_FILE);
+      respond("option name LogLevel type combo default info var off var info var debug");
       respond("uciok");
     } else if (line.equals("isready")) {
       respond("readyok");
+    } else if (line.startsWith("setoption name EvalFile value ")) {
+      setEvalFile(line.substring(30).trim());
+    } else if (line.startsWith("setoption name EvalParams value ")) {
+      setEvalParams(line.substring(32).trim());
+    } else if (line.startsWith("setoption name LogFile value ")) {
+      setLogFile(line.substring(29).trim());
+    } else if (line.startsWith("setoption name LogLevel value ")) {
+      setLogLevel(line.substring(30).trim());
     } else if (line.startsWith("position fen ")) {
       String fenstring = line.substring(13);
-      log(fenstring);
-      if (board.enPassantTarget != 0) {
-        int enPassantTargetIndex = new Bitboard(board.enPassantTarget).numEmptyStartingSquares();
-        log("EP Target: " + new Square(enPassantTargetIndex).getName());
-      } else {
-        log("EP Target: None");
+      logger.debug(fenstring);
+      if (logger.isEnabled(Logger.Level.DEBUG)) {
+        if (board.enPassantTarget != 0) {
+          int enPassantTargetIndex = new Bitboard(board.enPassantTarget).numEmptyStartingSquares();
+          logger.debug("EP Target: " + new Square(enPassantTargetIndex).getName());
+        } else {
+          logger.debug("EP Target: None");
+        }
       }
       board.setPositionFenstring(fenstring);
-      log(board.toString());
+      if (logger.isEnabled(Logger.Level.DEBUG)) {
+        logger.debug(board.toString());
+      }
+    } else if (line.equals("bench") || line.startsWith("bench ")) {
+      int depth = line.equals("bench") ? Bench.DEPTH
+          : parseDepth(line.substring(6), brain.getMaxDepth());
+      if (depth < 0) {
+        return;
+      }
+      Bench.run(brain, board, depth, Tactician::respond);
+    } else if (line.startsWith("go perft ")) {
+      int depth = parseDepth(line.substring(9), Perft.MAX_DEPTH);
+      if (depth < 0) {
+        return;
+      }
+      long start = System.currentTimeMillis();
+      Perft perft = new Perft(perftHashSize, perftThreads);
+      Map<Move, Long> divide = perft.divide(board, depth);
+      perft.shutdown();
+      log("Perft time: " + (System.currentTimeMillis() - start) + " ms");
+      for (String divideLine : Perft.divideLines(divide)) {
+        respond(divideLine);
+      }
     } else if (line.startsWith("go ")) {
+      long start = System.currentTimeMillis();
       Move move = brain.getMove(board);
-      String moveLongAlgebraic = move.toString();
-      logPrincipalVariation(move);
-      respond("bestmove " + moveLongAlgebraic);
+      long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+      SearchStatistics statistics = brain.getStatistics();
+      respond("info string " + statistics);
+      respond("bestmove " + move);
+      // The GUI has its move, so the rest is only for the log.
+      if (!logger.isEnabled(Logger.Level.INFO)) {
+        return;
+      }
+      logPrincipalVariation();
+      log("Search: " + statistics.nodes + " nodes in " + elapsed + " ms ("
+          + statistics.nodes * 1000 / elapsed + " nodes/s)");
+      EvaluationHashTable evaluationHashTable = brain.getEvaluation().getEvaluationHashTable();
+      log("Evaluation cache: " + evaluationHashTable.getHits() + " hits out of "
+          + evaluationHashTable.getProbes() + " probes ("
+          + Math.round(100 * evaluationHashTable.getHitRate()) + "%)");
     }
   }
 
   /**
    * Listens to UCI commands, typically from a chess GUI, and responds to them.
    * 
-   * @param args the standard main function command-line arguments, not used here
+   * @param args the standard main function command-line arguments: either {@code bench}
+   *        optionally followed by a depth, to run the benchmark in {@link Bench} and exit, or
+   *        optionally the path of an evaluation parameters file to load at startup, see
+   *        {@link #setEvalParams(String)}
    */
   public static void main(String[] args) {
-    logClear();
+    // Write out the lines still queued when the program exits.
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> logger.close()));
+    if (args.length > 0 && args[0].equals("bench")) {
+      int depth = args.length > 1 ? parseDepth(args[1], brain.getMaxDepth()) : Bench.DEPTH;
+      if (depth < 0) {
+        System.err.println("Usage: Tactician bench [depth], with a depth from 1 to "
+            + brain.getMaxDepth());
+        System.exit(1);
+      }
+      Bench.run(brain, board, depth, System.out::println);
+      return;
+    }
+    if (args.length > 0) {
+      setEvalParams(args[0]);
+    }
+    brain.setSearchListener(new UciInfoListener(Tactician::respond));
+    TranspositionTableEvent.register(brain);
+    try {
+      EngineMonitor.register(new EngineMonitor(brain, () -> perftThreads,
+          threads -> perftThreads = threads));
+    } catch (JMException e) {
+      log("Could not register the engine monitor: " + e.getMessage());
+    }
     BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
     String line = "";
     while (true) {
@@ -132,9 +282,35 @@ public class Tactician {
     }
   }
 
-  /** The filename where we log commands and other details about the position for debugging. */
-  private static String logFilename = "/Users/philleski/chess.log";
+  /**
+   * The default file where we log commands and other details about the position for debugging,
+   * set by the system property {@code tactician.log} or else chess.log in the home directory. It
+   * can be changed with the UCI option {@code LogFile}.
+   */
+  private static String DEFAULT_LOG_FILE = System.getProperty("tactician.log",
+      System.getProperty("user.home") + File.separator + "chess.log");
+
+  /**
+   * The log, at the level set by the system property {@code tactician.logLevel} or else info. The
+   * level can be changed with the UCI option {@code LogLevel}. An unknown level in the property
+   * is logged and leaves the level at info, as it does for the option.
+   */
+  private static Logger logger = new Logger(DEFAULT_LOG_FILE, Logger.Level.INFO);
+
+  static {
+    setLogLevel(System.getProperty("tactician.logLevel", "info"));
+  }
+
+  /** The number of subtree counts cached by {@code go perft}, see {@link PerftHashTable}. */
+  private static int perftHashSize = 4 * 1024 * 1024;
+
+  /**
+   * The number of threads used by {@code go perft}, by default one per processor. It can be changed
+   * while the engine runs through {@link EngineMonitor}.
+   */
+  private static volatile int perftThreads = Runtime.getRuntime().availableProcessors();
 
   private static Board board = new Board();
+  private static NeuralNetwork neuralNetwork = null;
   private static Brain brain = new Brain();
 }
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 import tactician.Board;
+import tactician.Move;
+import tactician.Piece;
 
 /**
  * This class tests the functionality of the {@link Board} class.
@@ -62,4 +64,115 @@ public class TestBoard {
     Board board = new Board("4k3/8/8/8/8/8/8/8/4K3 b KQkq - 16 16");
     assertEquals(board.fullMoveCounter, 16);
   }
+
+  /**
+   * Tests that an en passant capture counts as a capture even though its destination square is
+   * empty, while a pawn push onto an empty square does not.
+   */
+  @Test
+  public void testIsCaptureEnPassant() {
+    Board board = new Board("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+    assertEquals(board.isCapture(new Move("e5", "d6")), true);
+    assertEquals(board.isCapture(new Move("e5", "e6")), false);
+    assertEquals(board.isCapture(new Move("e1", "d2")), false);
+  }
+
+  /**
+   * Tests the static exchange evaluation of a pawn capturing a knight that is defended by a pawn.
+   * White wins a knight for a pawn.
+   */
+  @Test
+  public void testSeeWinningCapture() {
+    Board board = new Board("4k3/2p5/3n4/4P3/8/8/8/4K3 w - - 0 1");
+    assertEquals(board.see(new Move("e5", "d6")), 220);
+  }
+
+  /**
+   * Tests the static exchange evaluation of a queen capturing a pawn that is defended by a pawn.
+   * The capture loses the queen for a pawn.
+   */
+  @Test
+  public void testSeeLosingCapture() {
+    Board board = new Board("4k3/8/2p5/3p4/8/8/8/3QK3 w - - 0 1");
+    assertEquals(board.see(new Move("d1", "d5")), -780);
+    assertEquals(board.seeGreaterOrEqual(new Move("d1", "d5"), 0), false);
+  }
+
+  /**
+   * Tests that the static exchange evaluation takes x-ray attackers into account. The d1 rook only
+   * attacks d5 once the d2 rook has captured there, and it allows white to win the pawn.
+   */
+  @Test
+  public void testSeeXray() {
+    Board board = new Board("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1");
+    assertEquals(board.see(new Move("d2", "d5")), 100);
+  }
+
+  /**
+   * Tests that the threshold test agrees with the full static exchange evaluation just above and
+   * below its value, both when the first capture decides it and when the exchange must be played
+   * out.
+   */
+  @Test
+  public void testSeeGreaterOrEqual() {
+    Board board = new Board("4k3/2p5/3n4/4P3/8/8/8/4K3 w - - 0 1");
+    assertEquals(board.seeGreaterOrEqual(new Move("e5", "d6"), 220), true);
+    assertEquals(board.seeGreaterOrEqual(new Move("e5", "d6"), 221), false);
+    board = new Board("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1");
+    assertEquals(board.seeGreaterOrEqual(new Move("d2", "d5"), 100), true);
+    assertEquals(board.seeGreaterOrEqual(new Move("d2", "d5"), 101), false);
+  }
+
+  /**
+   * Tests that the piece-square sums and the game phase that are updated as moves are made match
+   * the ones computed from scratch. The moves include an en passant capture, both kinds of castling,
+   * a promotion, and a capture.
+   */
+  @Test
+  public void testPieceSquareSumsIncremental() {
+    Board board = new Board("r3k2r/pPp2ppp/8/3pP3/8/8/P1PP1PPP/R3K2R w KQkq d6 0 1");
+    board.move("e5", "d6");
+    board.move("e8", "c8");
+    board.move(new Move("b7", "b8", Piece.QUEEN));
+    board.move("c8", "b8");
+    board.move("e1", "g1");
+    Board expected = new Board("1k1r3r/p1p2ppp/3P4/8/8/8/P1PP1PPP/R4RK1 b - - 0 3");
+    assertEquals(board.pieceSquareMidgame, expected.pieceSquareMidgame);
+    assertEquals(board.pieceSquareEndgame, expected.pieceSquareEndgame);
+    assertEquals(board.phase, expected.phase);
+    Board copy = new Board(board);
+    copy.setPieceSquareSums();
+    assertEquals(board.pieceSquareMidgame, copy.pieceSquareMidgame);
+    assertEquals(board.pieceSquareEndgame, copy.pieceSquareEndgame);
+    assertEquals(board.phase, copy.phase);
+  }
+
+  /** Tests that the piece-square sums are balanced and the phase is full at the start. */
+  @Test
+  public void testPieceSquareSumsStart() {
+    Board board = new Board();
+    assertEquals(board.pieceSquareMidgame, 0);
+    assertEquals(board.pieceSquareEndgame, 0);
+    assertEquals(board.phase, 24);
+  }
+
+  /** Ensures a packed position loads back into another board unchanged. */
+  @Test
+  public void testPackPosition() {
+    String fenstring = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K1R1 b Qkq - 3 12";
+    Board board = new Board(fenstring);
+    long[] packed = new long[2 * Board.PACKED_LENGTH];
+    board.packPosition(packed, Board.PACKED_LENGTH);
+    Board unpacked = new Board();
+    unpacked.move("d2", "d4");
+    unpacked.setPositionPacked(packed, Board.PACKED_LENGTH);
+    assertEquals(unpacked.toString(), board.toString());
+    assertEquals(unpacked.positionHash, board.positionHash);
+    assertEquals(unpacked.positionHashPawnsKings, board.positionHashPawnsKings);
+    assertEquals(unpacked.castleRights, board.castleRights);
+    assertEquals(unpacked.fullMoveCounter, 12);
+    assertEquals(unpacked.pieceSquareMidgame, board.pieceSquareMidgame);
+    assertEquals(unpacked.phase, board.phase);
+    assertEquals(unpacked.legalMoves().size(), board.legalMoves().size());
+  }
 }
@@ -2,12 +2,18 @@ package tactician.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
 
 import org.junit.Test;
 
 import tactician.Board;
 import tactician.Brain;
+import tactician.Evaluation;
 import tactician.Move;
+import tactician.SearchStatistics;
+import tactician.TranspositionTable;
 
 /**
  * This class tests the functionality of the {@link Brain} class.
@@ -87,4 +93,161 @@ public class TestBrain {
     Move move = brain.getMove(board);
     assertEquals(move.toString(), "b5c7");
   }
+
+  /**
+   * Ensures that checks are searched past the nominal depth. Here the back rank mate takes four
+   * plies plus the king capture, which a two ply search only finds because both replies are forced
+   * by a check.
+   */
+  @Test
+  public void testCheckExtension() {
+    Board board = new Board("3r2k1/5ppp/8/8/8/8/4R3/4R1K1 w - - 0 1");
+    Brain brain = new Brain();
+    Move move = brain.getMoveToDepth(board, 2);
+    assertEquals(move.toString(), "e2e8");
+  }
+
+  /**
+   * Ensures the node count is reported and that a search from a cleared state repeats exactly,
+   * which the benchmark fingerprint relies on.
+   */
+  @Test
+  public void testNodesRepeatable() {
+    Board board =
+        new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    Brain brain = new Brain();
+    Move move = brain.getMove(board, 3);
+    long nodes = brain.getNodes();
+    assertTrue(nodes > 0);
+    brain.getMove(board, 3);
+    brain.clear();
+    assertEquals(brain.getMove(board, 3), move);
+    assertEquals(brain.getNodes(), nodes);
+  }
+
+  /** Ensures the search statistics are consistent with each other and with the node count. */
+  @Test
+  public void testStatistics() {
+    Board board =
+        new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    Brain brain = new Brain();
+    brain.getMove(board, 4);
+    SearchStatistics statistics = brain.getStatistics();
+    assertEquals(statistics.getIterations(), 4);
+    assertEquals(statistics.nodes, brain.getNodes());
+    assertTrue(statistics.quiescentNodes > 0 && statistics.quiescentNodes < statistics.nodes);
+    assertTrue(statistics.transpositionHits > 0);
+    assertTrue(statistics.transpositionHits <= statistics.transpositionProbes);
+    assertTrue(statistics.betaCutoffsFirstMove > 0);
+    assertTrue(statistics.betaCutoffsFirstMove <= statistics.betaCutoffs);
+    assertTrue(statistics.effectiveBranchingFactor() > 1);
+    brain.getMove(board, 1);
+    assertEquals(statistics.getIterations(), 1);
+    assertEquals(statistics.effectiveBranchingFactor(), 0.0, 0.0);
+  }
+
+  /** Ensures the principal variation starts with the best move and is made of legal moves. */
+  @Test
+  public void testPrincipalVariation() {
+    Board board =
+        new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    Brain brain = new Brain();
+    Move move = brain.getMove(board, 4);
+    ArrayList<Move> principalVariation = brain.getPrincipalVariation();
+    assertTrue(principalVariation.size() >= 2);
+    assertEquals(principalVariation.get(0), move);
+    for (Move pvMove : principalVariation) {
+      assertTrue(board.legalMoves().contains(pvMove));
+      board.move(pvMove);
+    }
+  }
+
+  /** Ensures the principal variation of a mate ends with the mating move. */
+  @Test
+  public void testPrincipalVariationMate() {
+    Board board = new Board("4k3/8/4K3/8/8/8/8/R7 w - - 0 1");
+    Brain brain = new Brain();
+    brain.getMove(board, 4);
+    assertEquals(brain.getPrincipalVariation().toString(), "[a1a8]");
+  }
+
+  /**
+   * Ensures that a deep node without a transposition table entry finds its best move with
+   * internal iterative deepening, and that doing so leaves its score unchanged compared with a
+   * node whose move ordering comes from an earlier search.
+   */
+  @Test
+  public void testInternalIterativeDeepening() {
+    Board board = new Board("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+    Brain brain = new Brain();
+    int fitness =
+        brain.alphabeta(board, 4, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    TranspositionTable.TranspositionEntry entry =
+        brain.getTranspositionTable().get(board.positionHash);
+    assertEquals(entry.bestMove.toString(), "d2d5");
+
+    Brain seededBrain = new Brain();
+    seededBrain.alphabeta(board, 2, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    int seededFitness =
+        seededBrain.alphabeta(board, 4, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    assertEquals(fitness, seededFitness);
+  }
+
+  /**
+   * Ensures that internal iterative deepening at a node in check, which gets a check extension,
+   * finds the best move and leaves the score unchanged. A search to depth 4 first sets the
+   * iteration depth so that the extension applies, and the transposition table is then cleared.
+   */
+  @Test
+  public void testInternalIterativeDeepeningInCheck() {
+    Board board = new Board("4k3/8/8/8/8/8/3q4/R3K3 w - - 0 1");
+    Brain brain = new Brain();
+    brain.getMoveToDepth(board, 4);
+    brain.getTranspositionTable().clear();
+    int fitness =
+        brain.alphabeta(board, 4, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    TranspositionTable.TranspositionEntry entry =
+        brain.getTranspositionTable().get(board.positionHash);
+    assertEquals(entry.depth, 5);
+    assertEquals(entry.bestMove.toString(), "e1d2");
+
+    Brain seededBrain = new Brain();
+    seededBrain.getMoveToDepth(board, 4);
+    seededBrain.getTranspositionTable().clear();
+    seededBrain.alphabeta(board, 2, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    int seededFitness =
+        seededBrain.alphabeta(board, 4, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    assertEquals(fitness, seededFitness);
+  }
+
+  /**
+   * Ensures that a node where every move fails low keeps the move from the transposition table,
+   * so that the next visit searches it first instead of repeating internal iterative deepening.
+   */
+  @Test
+  public void testFailLowKeepsBestMove() {
+    Board board = new Board("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+    Brain brain = new Brain();
+    brain.alphabeta(board, 2, 1, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    int alpha = Evaluation.FITNESS_MATE_BOUND - 1;
+    brain.alphabeta(board, 4, 1, alpha, alpha + 1);
+    TranspositionTable.TranspositionEntry entry =
+        brain.getTranspositionTable().get(board.positionHash);
+    assertEquals(entry.depth, 4);
+    assertEquals(entry.type, TranspositionTable.TranspositionType.NODE_ALL);
+    assertEquals(entry.bestMove.toString(), "d2d5");
+  }
+
+  /** Ensures that the alpha-beta search can be called directly on the root position. */
+  @Test
+  public void testAlphabetaAtRoot() {
+    Board board = new Board();
+    board.move("f2", "f3");
+    board.move("e7", "e5");
+    board.move("g2", "g4");
+    Brain brain = new Brain();
+    int fitness =
+        brain.alphabeta(board, 3, 0, -Evaluation.FITNESS_LARGE, Evaluation.FITNESS_LARGE);
+    assertTrue(fitness >= Evaluation.FITNESS_MATE_BOUND);
+  }
 }
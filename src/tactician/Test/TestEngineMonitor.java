@@ -0,0 +1,63 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Brain;
+import tactician.EngineMonitor;
+
+/**
+ * This class tests the functionality of the {@link EngineMonitor} class.
+ * 
+ * @author Phil Leszczynski
+ */
+public class TestEngineMonitor {
+  /** Ensures the attributes reflect the last search and the operations take effect. */
+  @Test
+  public void testAttributes() {
+    Brain brain = new Brain();
+    int[] perftThreads = {2};
+    EngineMonitor monitor =
+        new EngineMonitor(brain, () -> perftThreads[0], threads -> perftThreads[0] = threads);
+    long allocatedBefore = monitor.getAllocatedBytes();
+    brain.getMove(new Board(), 4);
+    assertEquals(monitor.getSearchDepth(), 4);
+    assertEquals(monitor.getNodes(), brain.getNodes());
+    assertTrue(monitor.getNodesPerSecond() > 0);
+    assertTrue(monitor.getTranspositionHitRate() > 0);
+    assertTrue(monitor.getEvaluationHitRate() > 0);
+    assertTrue(monitor.getPawnKingHitRate() > 0);
+    assertTrue(monitor.getAllocatedBytes() == -1 || monitor.getAllocatedBytes() > allocatedBefore);
+
+    monitor.clearHashTables();
+    assertEquals(monitor.getHashfull(), 0);
+    assertEquals(monitor.getPawnKingHitRate(), 0.0, 0.0);
+
+    assertEquals(monitor.getPerftThreads(), 2);
+    monitor.setPerftThreads(3);
+    assertEquals(perftThreads[0], 3);
+  }
+
+  /** Ensures the monitor can be read and controlled through the platform MBean server. */
+  @Test
+  public void testRegister() throws JMException {
+    Brain brain = new Brain();
+    EngineMonitor.register(new EngineMonitor(brain, () -> 1, threads -> { }));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(EngineMonitor.OBJECT_NAME);
+    brain.getMove(new Board(), 2);
+    assertEquals(server.getAttribute(name, "Nodes"), brain.getNodes());
+    server.invoke(name, "clearHashTables", null, null);
+    assertEquals(server.getAttribute(name, "Hashfull"), 0);
+    server.unregisterMBean(name);
+  }
+}
@@ -1,10 +1,14 @@
 package tactician.Test;
 
 import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
 import org.junit.Test;
 import tactician.Board;
 import tactician.Color;
 import tactician.Evaluation;
+import tactician.EvaluationHashTable;
 
 /**
  * This class tests the functionality of the {@link Evaluation} class.
@@ -203,4 +207,79 @@ public class TestEvaluation {
     board.move("h7", "h6");
     assertTrue(evaluation.fitness(board) > 0);
   }
+
+  /**
+   * Ensures that the static evaluation does not allocate on the heap once the pawn/king hash table
+   * entry for the position has been filled in. The evaluation runs at every leaf of the search, so
+   * any allocation there turns into garbage collection pauses. The evaluation hash table is
+   * cleared before each call so that the full evaluation runs every time.
+   */
+  @Test
+  public void testFitnessNoAllocation() {
+    Board board = new Board("r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8");
+    Evaluation evaluation = new Evaluation();
+    EvaluationHashTable evaluationHashTable = evaluation.getEvaluationHashTable();
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    int total = 0;
+    for (int i = 0; i < 1000; i++) {
+      evaluationHashTable.clear();
+      total += evaluation.fitness(board);
+    }
+    long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 1000; i++) {
+      evaluationHashTable.clear();
+      total += evaluation.fitness(board);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    assertEquals(total, 2000 * evaluation.fitness(board));
+    assertTrue(allocated < 1000);
+  }
+
+  /** Ensures that evaluating a position again is served from the evaluation hash table. */
+  @Test
+  public void testFitnessCached() {
+    Board board = new Board();
+    Evaluation evaluation = new Evaluation();
+    EvaluationHashTable evaluationHashTable = evaluation.getEvaluationHashTable();
+    int fitness = evaluation.fitness(board);
+    assertEquals(evaluationHashTable.getHits(), 0);
+    assertEquals(evaluation.fitness(board), fitness);
+    assertEquals(evaluationHashTable.getHits(), 1);
+    board.move("e2", "e4");
+    evaluation.fitness(board);
+    assertEquals(evaluationHashTable.getHits(), 1);
+    assertEquals(evaluationHashTable.getProbes(), 3);
+  }
+
+  /**
+   * Ensures the lazy evaluation returns the quick estimate when it is far outside of the window,
+   * and the full evaluation otherwise.
+   */
+  @Test
+  public void testFitnessLazy() {
+    // White is up a queen and a rook, and the rook is on an open file.
+    Board board = new Board("4k3/pppp1ppp/8/8/8/2P5/2P2PPP/Q3RK2 w - - 0 1");
+    Evaluation evaluation = new Evaluation();
+    int quick = evaluation.fitnessQuick(board);
+    int full = evaluation.fitness(board);
+    assertTrue(quick != full);
+    evaluation.getEvaluationHashTable().clear();
+    assertEquals(evaluation.fitnessLazy(board, -1000, quick - Evaluation.LAZY_MARGIN), quick);
+    assertEquals(evaluation.fitnessLazy(board, quick + Evaluation.LAZY_MARGIN, quick + 1000),
+        quick);
+    assertEquals(evaluation.fitnessLazy(board, quick - 100, quick + 100), full);
+    // Only the full evaluation was stored, and it is returned regardless of the window.
+    assertEquals(evaluation.fitnessLazy(board, -1000, quick - Evaluation.LAZY_MARGIN), full);
+  }
+
+  /** Ensures a knight in the center, where it attacks more squares, is preferred to a corner. */
+  @Test
+  public void testMobility() {
+    Evaluation evaluation = new Evaluation();
+    Board center = new Board("4k3/8/8/8/3N4/8/8/4K3 w - - 0 1");
+    Board corner = new Board("4k3/8/8/8/8/8/8/N3K3 w - - 0 1");
+    assertTrue(evaluation.fitness(center) > evaluation.fitness(corner));
+  }
 }
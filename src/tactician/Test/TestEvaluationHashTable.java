@@ -0,0 +1,46 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import tactician.EvaluationHashTable;
+
+/**
+ * This class tests the functionality of the {@link EvaluationHashTable} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestEvaluationHashTable {
+  /** Ensures the table is rounded up to a power of two. */
+  @Test
+  public void testSize() {
+    assertEquals(new EvaluationHashTable(1000).size(), 1024);
+    assertEquals(new EvaluationHashTable(1024).size(), 1024);
+  }
+
+  /** Ensures a stored score is found again and a missing one is not. */
+  @Test
+  public void testPutGet() {
+    EvaluationHashTable table = new EvaluationHashTable(16);
+    assertEquals(table.get(0), EvaluationHashTable.NOT_FOUND);
+    table.put(0x123456789L, -250);
+    assertEquals(table.get(0x123456789L), -250);
+    assertEquals(table.get(0x123456788L), EvaluationHashTable.NOT_FOUND);
+    assertEquals(table.getProbes(), 3);
+    assertEquals(table.getHits(), 1);
+  }
+
+  /** Ensures that a position sharing a slot replaces the previous one rather than matching it. */
+  @Test
+  public void testCollision() {
+    EvaluationHashTable table = new EvaluationHashTable(16);
+    table.put(5, 10);
+    table.put(5 + 16, 20);
+    assertEquals(table.get(5), EvaluationHashTable.NOT_FOUND);
+    assertEquals(table.get(5 + 16), 20);
+    table.clear();
+    assertEquals(table.get(5 + 16), EvaluationHashTable.NOT_FOUND);
+    assertEquals(table.getHits(), 0);
+  }
+}
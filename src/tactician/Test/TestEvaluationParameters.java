@@ -0,0 +1,94 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Evaluation;
+import tactician.EvaluationParameters;
+import tactician.Piece;
+import tactician.PieceSquareTable;
+
+/**
+ * This class tests the functionality of the {@link EvaluationParameters} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestEvaluationParameters {
+  /** Ensures every parameter has its own name and survives a round trip through the vector. */
+  @Test
+  public void testValues() {
+    assertEquals(new HashSet<String>(Arrays.asList(EvaluationParameters.NAMES)).size(),
+        EvaluationParameters.NAMES.length);
+    EvaluationParameters parameters = new EvaluationParameters();
+    int[] values = parameters.getValues();
+    assertEquals(values.length, EvaluationParameters.NAMES.length);
+    int knight = Arrays.asList(EvaluationParameters.NAMES).indexOf("MaterialKnight");
+    assertEquals(values[knight], 320);
+    values[knight] = 300;
+    parameters.setValues(values);
+    assertEquals(parameters.materialValue[Piece.KNIGHT.ordinal()], 300);
+    assertEquals(new EvaluationParameters(parameters).materialValue[Piece.KNIGHT.ordinal()], 300);
+  }
+
+  /** Ensures a saved file loads back, and that missing parameters keep their defaults. */
+  @Test
+  public void testSaveLoad() throws IOException {
+    File file = File.createTempFile("parameters", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write("BishopPair 40\nPawnEndgameA7 200\n");
+    writer.close();
+    EvaluationParameters parameters = EvaluationParameters.load(file.getPath());
+    assertEquals(parameters.bishopPair, 40);
+    assertEquals(parameters.pawnTableEndgame[6][0], 200);
+    assertEquals(parameters.rookOpenFile, new EvaluationParameters().rookOpenFile);
+
+    parameters.save(file.getPath());
+    EvaluationParameters loaded = EvaluationParameters.load(file.getPath());
+    assertEquals(Arrays.toString(loaded.getValues()), Arrays.toString(parameters.getValues()));
+  }
+
+  /** Ensures an unknown parameter name is rejected. */
+  @Test
+  public void testLoadUnknown() throws IOException {
+    File file = File.createTempFile("parameters", ".txt");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write("BishopPairBonus 40\n");
+    writer.close();
+    boolean thrown = false;
+    try {
+      EvaluationParameters.load(file.getPath());
+    } catch (IOException e) {
+      thrown = true;
+    }
+    assertTrue(thrown);
+  }
+
+  /** Ensures that new material values reach both the board's sums and the evaluation. */
+  @Test
+  public void testMaterialValue() {
+    String fenstring = "4k3/8/8/8/8/8/8/1N2K3 w - - 0 1";
+    Board board = new Board(fenstring);
+    Evaluation evaluation = new Evaluation();
+    int before = evaluation.fitness(board);
+
+    EvaluationParameters parameters = new EvaluationParameters();
+    parameters.materialValue[Piece.KNIGHT.ordinal()] += 100;
+    board.setPieceSquareTable(new PieceSquareTable(parameters));
+    evaluation.setParameters(parameters);
+    assertEquals(evaluation.fitness(board), before + 100);
+
+    // The tables are carried over to copies of the board.
+    assertEquals(evaluation.fitness(new Board(board)), before + 100);
+  }
+}
@@ -0,0 +1,71 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Brain;
+import tactician.Move;
+import tactician.SearchIterationEvent;
+import tactician.TranspositionTableEvent;
+
+/**
+ * This class tests the {@link SearchIterationEvent} and {@link TranspositionTableEvent} Java
+ * Flight Recorder events.
+ * 
+ * @author Phil Leszczynski
+ */
+public class TestFlightRecorderEvents {
+  /** Ensures a recording gets one event per iteration and a transposition table sample. */
+  @Test
+  public void testEvents() throws IOException {
+    Board board =
+        new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    Brain brain = new Brain();
+    TranspositionTableEvent.register(brain);
+    Path path = Files.createTempFile("search", ".jfr");
+    path.toFile().deleteOnExit();
+    Recording recording = new Recording();
+    recording.enable(SearchIterationEvent.class);
+    recording.enable(TranspositionTableEvent.class).with("period", "endChunk");
+    recording.start();
+    Move move = brain.getMove(board, 3);
+    recording.stop();
+    recording.dump(path);
+    recording.close();
+
+    List<RecordedEvent> iterations = new ArrayList<RecordedEvent>();
+    List<RecordedEvent> samples = new ArrayList<RecordedEvent>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+      if (event.getEventType().getName().equals("tactician.SearchIteration")) {
+        iterations.add(event);
+      } else if (event.getEventType().getName().equals("tactician.TranspositionTable")) {
+        samples.add(event);
+      }
+    }
+    assertEquals(iterations.size(), 3);
+    long nodes = 0;
+    for (int i = 0; i < iterations.size(); i++) {
+      assertEquals(iterations.get(i).getInt("depth"), i + 1);
+      nodes += iterations.get(i).getLong("nodes");
+    }
+    assertEquals(nodes, brain.getNodes());
+    assertEquals(iterations.get(2).getString("bestMove"), move.toString());
+    assertFalse(iterations.get(0).getBoolean("bestMoveChanged"));
+    assertFalse(samples.isEmpty());
+    assertTrue(samples.get(0).getLong("probes") > 0);
+  }
+}
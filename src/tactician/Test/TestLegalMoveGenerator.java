@@ -1,11 +1,17 @@
 package tactician.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import tactician.Bitboard;
 import tactician.Board;
+import tactician.Color;
 import tactician.LegalMoveGenerator;
+import tactician.Move;
+import tactician.Piece;
+import tactician.Square;
 
 /**
  * This class tests the functionality of the {@link LegalMoveGenerator} class.
@@ -26,4 +32,46 @@ public class TestLegalMoveGenerator {
     Board board = new Board("rnbqrbnk/pppppppp/8/8/8/8/PPPPPPPP/RNBQRBNK w KQkq - 0 1");
     assertTrue(!board.isInCheck());
   }
+
+  /** Ensures the captures and the noncaptures together make up all the fast legal moves. */
+  @Test
+  public void testLegalMovesFastQuiet() {
+    Board board = new Board("r3k2r/pPp2ppp/2n5/3pP3/8/5N2/PPP2PPP/R3K2R w KQkq d6 0 1");
+    int numCaptures = board.legalMovesFast(true).size();
+    int numQuiets = board.legalMovesFastQuiet().size();
+    assertEquals(numCaptures + numQuiets, board.legalMovesFast(false).size());
+    for (Move move : board.legalMovesFastQuiet()) {
+      assertTrue(!board.isCapture(move));
+    }
+  }
+
+  /** Ensures we can tell whether a move remembered from another position can be played. */
+  @Test
+  public void testIsPseudoLegal() {
+    Board board = new Board("r3k2r/pPp2ppp/2n5/3pP3/8/5N2/PPP2PPP/R3K2R w KQkq d6 0 1");
+    assertTrue(board.isPseudoLegal(new Move("f3", "g5")));
+    assertTrue(board.isPseudoLegal(new Move("e5", "d6")));
+    assertTrue(board.isPseudoLegal(new Move("e1", "g1")));
+    assertTrue(board.isPseudoLegal(new Move("b7", "a8", Piece.QUEEN)));
+    assertTrue(!board.isPseudoLegal(new Move("b7", "b8")));
+    assertTrue(!board.isPseudoLegal(new Move("a1", "a3")));
+    assertTrue(!board.isPseudoLegal(new Move("e5", "e6", Piece.QUEEN)));
+    assertTrue(!board.isPseudoLegal(new Move("c6", "b4")));
+    assertTrue(!board.isPseudoLegal(null));
+  }
+
+  /** Ensures the attack squares of each piece are looked up with long range pieces blocked. */
+  @Test
+  public void testAttackSquares() {
+    Board board = new Board("4k3/8/8/3p4/8/8/3R4/3QK3 w - - 0 1");
+    assertEquals(board.attackSquares(Color.WHITE, Piece.ROOK, new Square("d2").getIndex()),
+        new Bitboard("a2", "b2", "c2", "e2", "f2", "g2", "h2", "d1", "d3", "d4", "d5").getData());
+    assertEquals(board.attackSquares(Color.WHITE, Piece.QUEEN, new Square("d1").getIndex()),
+        new Bitboard("a1", "b1", "c1", "e1", "d2", "c2", "b3", "a4", "e2", "f3", "g4", "h5")
+            .getData());
+    assertEquals(board.attackSquares(Color.BLACK, Piece.PAWN, new Square("d5").getIndex()),
+        new Bitboard("c4", "e4").getData());
+    assertEquals(board.attackSquares(Color.WHITE, Piece.KNIGHT, new Square("a1").getIndex()),
+        new Bitboard("b3", "c2").getData());
+  }
 }
@@ -0,0 +1,59 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import tactician.Logger;
+
+/**
+ * This class tests the functionality of the {@link Logger} class.
+ * 
+ * @author Phil Leszczynski
+ */
+public class TestLogger {
+  /** Ensures lines are written in order and only at the enabled levels. */
+  @Test
+  public void testLevels() throws IOException {
+    File file = File.createTempFile("log", ".txt");
+    file.deleteOnExit();
+    Logger logger = new Logger(file.getPath(), Logger.Level.INFO);
+    assertTrue(logger.isEnabled(Logger.Level.INFO));
+    assertFalse(logger.isEnabled(Logger.Level.DEBUG));
+    logger.info("< go");
+    logger.debug("board");
+    logger.info("> bestmove e2e4");
+    logger.setLevel(Logger.Level.DEBUG);
+    logger.debug("board");
+    logger.setLevel(Logger.Level.OFF);
+    assertFalse(logger.isEnabled(Logger.Level.INFO));
+    logger.info("< quit");
+    logger.close();
+    logger.info("after close");
+    List<String> lines = Files.readAllLines(file.toPath());
+    assertEquals(lines, Arrays.asList("< go", "> bestmove e2e4", "board"));
+    assertEquals(logger.getDropped(), 0L);
+  }
+
+  /** Ensures a new logger empties the file. */
+  @Test
+  public void testTruncate() throws IOException {
+    File file = File.createTempFile("log", ".txt");
+    file.deleteOnExit();
+    Logger logger = new Logger(file.getPath(), Logger.Level.INFO);
+    logger.info("first");
+    logger.close();
+    logger = new Logger(file.getPath(), Logger.Level.INFO);
+    logger.info("second");
+    logger.close();
+    assertEquals(Files.readAllLines(file.toPath()), Arrays.asList("second"));
+  }
+}
@@ -0,0 +1,132 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Evaluation;
+import tactician.Move;
+import tactician.NeuralNetwork;
+import tactician.Piece;
+
+/**
+ * This class tests the functionality of the {@link NeuralNetwork} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestNeuralNetwork {
+  /**
+   * Builds a small network with random weights.
+   *
+   * @param hiddenSize the number of neurons in the hidden layer
+   * @return the network
+   */
+  private static NeuralNetwork randomNetwork(int hiddenSize) {
+    Random random = new Random(1);
+    short[] featureWeights = new short[NeuralNetwork.NUM_FEATURES * hiddenSize];
+    short[] featureBiases = new short[hiddenSize];
+    short[] outputWeights = new short[2 * hiddenSize];
+    for (int i = 0; i < featureWeights.length; i++) {
+      featureWeights[i] = (short) (random.nextInt(41) - 20);
+    }
+    for (int i = 0; i < featureBiases.length; i++) {
+      featureBiases[i] = (short) random.nextInt(100);
+    }
+    for (int i = 0; i < outputWeights.length; i++) {
+      outputWeights[i] = (short) (random.nextInt(129) - 64);
+    }
+    return new NeuralNetwork(hiddenSize, featureWeights, featureBiases, outputWeights,
+        (short) 100);
+  }
+
+  /**
+   * Ensures the accumulators updated move by move match the ones computed from scratch, through
+   * captures, en passant, castling, and promotion.
+   */
+  @Test
+  public void testIncrementalAccumulators() {
+    NeuralNetwork network = randomNetwork(16);
+    Board board = new Board("r3k2r/pPp2ppp/8/3pP3/8/8/P1PP1PPP/R3K2R w KQkq d6 0 1");
+    board.setNeuralNetwork(network);
+    board.move("e5", "d6");
+    board.move("e8", "c8");
+    board = new Board(board);
+    board.move(new Move("b7", "b8", Piece.QUEEN));
+    board.move("c8", "b8");
+    board.move("e1", "g1");
+    Board fresh = new Board("1k1r3r/p1p2ppp/3P4/8/8/8/P1PP1PPP/R4RK1 b - - 0 3");
+    fresh.setNeuralNetwork(network);
+    assertArrayEquals(board.accumulators[0], fresh.accumulators[0]);
+    assertArrayEquals(board.accumulators[1], fresh.accumulators[1]);
+  }
+
+  /** Ensures the evaluation is the same for a position and its mirror image with colors swapped. */
+  @Test
+  public void testSymmetry() {
+    NeuralNetwork network = randomNetwork(16);
+    Board board = new Board("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+    Board mirror =
+        new Board("rnbqk2r/pppp1ppp/5n2/2b1p3/4P3/2N2N2/PPPP1PPP/R1BQKB1R b KQkq - 4 4");
+    board.setNeuralNetwork(network);
+    mirror.setNeuralNetwork(network);
+    assertEquals(network.evaluate(board), network.evaluate(mirror));
+    assertEquals(new Evaluation().fitness(board), network.evaluate(board));
+  }
+
+  /** Ensures a network written in the file format is loaded with the same weights. */
+  @Test
+  public void testLoad() throws IOException {
+    int hiddenSize = 4;
+    int numValues = (NeuralNetwork.NUM_FEATURES + 3) * hiddenSize + 1;
+    ByteBuffer buffer = ByteBuffer.allocate(2 * numValues).order(ByteOrder.LITTLE_ENDIAN);
+    short[] featureWeights = new short[NeuralNetwork.NUM_FEATURES * hiddenSize];
+    short[] featureBiases = new short[hiddenSize];
+    short[] outputWeights = new short[2 * hiddenSize];
+    for (int i = 0; i < numValues; i++) {
+      short value = (short) (i % 13 - 6);
+      buffer.putShort(value);
+      if (i < featureWeights.length) {
+        featureWeights[i] = value;
+      } else if (i < featureWeights.length + hiddenSize) {
+        featureBiases[i - featureWeights.length] = value;
+      } else if (i < numValues - 1) {
+        outputWeights[i - featureWeights.length - hiddenSize] = value;
+      }
+    }
+    short outputBias = (short) ((numValues - 1) % 13 - 6);
+    File file = File.createTempFile("network", ".bin");
+    file.deleteOnExit();
+    Files.write(file.toPath(), buffer.array());
+
+    NeuralNetwork loaded = new NeuralNetwork(file.getPath());
+    NeuralNetwork expected =
+        new NeuralNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+    assertEquals(loaded.getHiddenSize(), hiddenSize);
+    Board board = new Board();
+    board.setNeuralNetwork(loaded);
+    Board expectedBoard = new Board();
+    expectedBoard.setNeuralNetwork(expected);
+    assertArrayEquals(board.accumulators[0], expectedBoard.accumulators[0]);
+    assertEquals(loaded.evaluate(board), expected.evaluate(expectedBoard));
+  }
+
+  /** Ensures a board without a network has no accumulators. */
+  @Test
+  public void testDisabled() {
+    Board board = new Board();
+    assertNull(board.accumulators);
+    board.setNeuralNetwork(randomNetwork(8));
+    board.setNeuralNetwork(null);
+    assertNull(board.accumulators);
+  }
+}
@@ -0,0 +1,55 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Color;
+import tactician.PawnKingHashTable;
+
+/**
+ * This class tests the functionality of the {@link PawnKingHashTable} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestPawnKingHashTable {
+  /** Ensures the doubled, isolated, and passed pawns are counted for each player. */
+  @Test
+  public void testPawnStructure() {
+    // White has doubled pawns on the c-file, every white pawn is isolated, and only the a-pawn is
+    // passed. Black's d-pawn is isolated and none of black's pawns are passed.
+    Board board = new Board("4k3/6pp/8/P7/3p4/2P5/2P3P1/4K3 w - - 0 1");
+    PawnKingHashTable table = new PawnKingHashTable(16);
+    long entry = table.probe(board);
+    assertEquals(PawnKingHashTable.numDoubledPawns(entry, Color.WHITE), 2);
+    assertEquals(PawnKingHashTable.numIsolatedPawns(entry, Color.WHITE), 4);
+    assertEquals(PawnKingHashTable.numPassedPawns(entry, Color.WHITE), 1);
+    assertEquals(PawnKingHashTable.numDoubledPawns(entry, Color.BLACK), 0);
+    assertEquals(PawnKingHashTable.numIsolatedPawns(entry, Color.BLACK), 1);
+    assertEquals(PawnKingHashTable.numPassedPawns(entry, Color.BLACK), 0);
+    assertEquals(table.probe(board), entry);
+  }
+
+  /** Ensures the king shelter terms are cached for a castled king. */
+  @Test
+  public void testKingShelter() {
+    PawnKingHashTable table = new PawnKingHashTable(16);
+    // Only the g-pawn is home and the f-pawn has stepped forward.
+    Board board = new Board("6k1/5ppp/8/8/8/5P2/6P1/6K1 w - - 0 1");
+    long entry = table.probe(board);
+    assertEquals(PawnKingHashTable.pawnShieldPenalty(entry, Color.WHITE), 75);
+    assertFalse(PawnKingHashTable.isKingOnOpenFile(entry, Color.WHITE));
+    board.move("g2", "g3");
+    entry = table.probe(board);
+    assertEquals(PawnKingHashTable.pawnShieldPenalty(entry, Color.WHITE), 100);
+    assertFalse(PawnKingHashTable.isKingOnOpenFile(entry, Color.WHITE));
+
+    board = new Board("6k1/5ppp/8/8/8/5P2/7P/6K1 w - - 0 1");
+    entry = table.probe(board);
+    assertTrue(PawnKingHashTable.isKingOnOpenFile(entry, Color.WHITE));
+    assertFalse(PawnKingHashTable.isKingOnOpenFile(entry, Color.BLACK));
+  }
+}
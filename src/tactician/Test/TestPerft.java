@@ -0,0 +1,98 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Move;
+import tactician.Perft;
+import tactician.PerftHashTable;
+
+/**
+ * This class tests the functionality of the {@link Perft} and {@link PerftHashTable} classes. The
+ * move generator itself is tested against the published counts in {@link TestPerformance}.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestPerft {
+  /** Ensures the divide output lists each root move and the total. */
+  @Test
+  public void testDivide() {
+    Map<Move, Long> divide = new Perft().divide(new Board(), 2);
+    assertEquals(divide.size(), 20);
+    assertEquals((long) divide.get(new Move("e2", "e4")), 20L);
+    ArrayList<String> lines = Perft.divideLines(divide);
+    assertEquals(lines.size(), 22);
+    assertEquals(lines.get(21), "Nodes searched: 400");
+  }
+
+  /** Ensures the counts match the published ones with and without the hash table. */
+  @Test
+  public void testHash() {
+    String fenstring = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    long[] nodeCounts = {1, 48, 2039, 97862};
+    Perft perft = new Perft();
+    Perft perftHashed = new Perft(1024);
+    for (int depth = 0; depth < nodeCounts.length; depth++) {
+      assertEquals(perft.perft(new Board(fenstring), depth), nodeCounts[depth]);
+      assertEquals(perftHashed.perft(new Board(fenstring), depth), nodeCounts[depth]);
+    }
+    // Again with the subtree counts from the previous runs in the table.
+    assertEquals(perftHashed.perft(new Board(fenstring), 3), 97862L);
+  }
+
+  /** Ensures the parallel counts match the single-threaded ones, with and without hashing. */
+  @Test
+  public void testParallel() {
+    String fenstring = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+    Perft perft = new Perft();
+    Perft perftParallel = new Perft(0, 4);
+    Perft perftParallelHashed = new Perft(1024, 4);
+    assertEquals(perftParallel.perft(new Board(fenstring), 3), 62379L);
+    assertEquals(perftParallelHashed.perft(new Board(fenstring), 3), 62379L);
+    assertEquals(perftParallel.divide(new Board(fenstring), 3),
+        perft.divide(new Board(fenstring), 3));
+    assertEquals(Perft.divideLines(perftParallelHashed.divide(new Board(fenstring), 3)).get(45),
+        "Nodes searched: 62379");
+    perftParallel.shutdown();
+    perftParallelHashed.shutdown();
+  }
+
+  /** Ensures a stored count is only found at the same position and depth. */
+  @Test
+  public void testHashTable() {
+    PerftHashTable table = new PerftHashTable(1000);
+    assertEquals(table.size(), 1024);
+    assertEquals(table.get(0, 1), PerftHashTable.NOT_FOUND);
+    table.put(0x123456789L, 3, 8902);
+    assertEquals(table.get(0x123456789L, 3), 8902L);
+    assertEquals(table.get(0x123456789L, 2), PerftHashTable.NOT_FOUND);
+    assertEquals(table.get(0x123456788L, 3), PerftHashTable.NOT_FOUND);
+  }
+
+  /** Ensures depths that have no meaning are rejected rather than recursed into. */
+  @Test
+  public void testInvalidDepth() {
+    Perft perft = new Perft();
+    assertEquals(perft.perft(new Board(), 0), 1L);
+    boolean thrown = false;
+    try {
+      perft.perft(new Board(), -1);
+    } catch (IllegalArgumentException e) {
+      thrown = true;
+    }
+    assertTrue(thrown);
+    thrown = false;
+    try {
+      perft.divide(new Board(), 0);
+    } catch (IllegalArgumentException e) {
+      thrown = true;
+    }
+    assertTrue(thrown);
+  }
+}
@@ -0,0 +1,86 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import tactician.EvaluationParameters;
+import tactician.TexelTuner;
+
+/**
+ * This class tests the functionality of the {@link TexelTuner} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestTexelTuner {
+  /** Ensures the results are read in each of the supported EPD formats. */
+  @Test
+  public void testParseEpdLine() {
+    String[] entry = TexelTuner.parseEpdLine(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 c9 \"1/2-1/2\";");
+    assertEquals(entry[0], "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+    assertEquals(entry[1], "0.5");
+    assertEquals(TexelTuner.parseEpdLine("4k3/8/8/8/8/8/8/4KQ2 w - - [1.0]")[1], "1");
+    assertEquals(TexelTuner.parseEpdLine("4kq2/8/8/8/8/8/8/4K3 w - - 0-1")[1], "0");
+    assertNull(TexelTuner.parseEpdLine("4k3/8/8/8/8/8/8/4K3 w - -"));
+    // Text in other operations is not mistaken for the result.
+    assertEquals(TexelTuner.parseEpdLine(
+        "4kq2/8/8/8/8/8/8/4K3 w - - c9 \"0-1\"; id \"pos 1.05\";")[1], "0");
+    assertEquals(TexelTuner.parseEpdLine("4k3/8/8/8/8/8/8/4KQ2 w - - id \"0-1\"; [1.0]")[1], "1");
+    assertNull(TexelTuner.parseEpdLine("4k3/8/8/8/8/8/8/4K3 w - - id \"1.05\";"));
+  }
+
+  /** Ensures that tuning lowers the error and keeps every weight. */
+  @Test
+  public void testTune() {
+    // Positions where the side with the passed pawn went on to win.
+    TexelTuner tuner = new TexelTuner(Arrays.asList("4k3/8/8/P7/8/8/5p2/4K3 w - - 0 1",
+        "4k3/8/8/8/1P6/8/8/4K3 b - - 0 1", "4k3/8/5p2/8/8/8/8/4K3 w - - 0 1",
+        "4k3/8/8/8/8/2p5/8/4K3 w - - 0 1"), new double[] {0.5, 1, 0, 0}, 2);
+    double scale = 1.0;
+    int[] initial = new EvaluationParameters().getValues();
+    double initialError = tuner.error(initial, scale);
+    ArrayList<String> progress = new ArrayList<String>();
+    int[] tuned = tuner.tune(scale, 2, progress::add);
+    assertEquals(tuned.length, EvaluationParameters.NAMES.length);
+    assertEquals(progress.size(), 2);
+    assertTrue(progress.get(0).startsWith("Pass 1: error "));
+    assertTrue(tuner.error(tuned, scale) < initialError);
+  }
+
+  /** Ensures positions are read from an EPD file, skipping lines without a result. */
+  @Test
+  public void testFromEpd() throws IOException {
+    File file = File.createTempFile("positions", ".epd");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write("4k3/8/8/8/8/8/8/4KQ2 w - - c9 \"1-0\";\n4k3/8/8/8/8/8/8/4K3 w - -\n"
+        + "4kq2/8/8/8/8/8/8/4K3 w - - [0.0]\n");
+    writer.close();
+    TexelTuner tuner = TexelTuner.fromEpd(file.getPath(), 1);
+    assertEquals(tuner.size(), 2);
+    // The evaluation agrees with both results, so the error is small.
+    assertTrue(tuner.error(new EvaluationParameters().getValues(), 1.0) < 0.01);
+  }
+
+  /** Ensures the weights written by the tuner are loaded back as evaluation parameters. */
+  @Test
+  public void testWriteLoadWeights() throws IOException {
+    int[] weights = new EvaluationParameters().getValues();
+    weights[0] += 7;
+    weights[weights.length - 1] -= 3;
+    File file = File.createTempFile("weights", ".txt");
+    file.deleteOnExit();
+    TexelTuner.writeWeights(weights, file.getPath());
+    EvaluationParameters parameters = EvaluationParameters.load(file.getPath());
+    assertEquals(Arrays.toString(parameters.getValues()), Arrays.toString(weights));
+  }
+}
@@ -0,0 +1,58 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import tactician.Evaluation;
+import tactician.Move;
+import tactician.Piece;
+import tactician.TranspositionTable;
+
+/**
+ * This class tests the functionality of the {@link TranspositionTable} class.
+ *
+ * @author Phil Leszczynski
+ */
+public class TestTranspositionTable {
+  /** Ensures an entry is unpacked with the same values it was packed with. */
+  @Test
+  public void testPutGet() {
+    TranspositionTable table = new TranspositionTable(16);
+    int mateFitness = -Evaluation.FITNESS_LARGE + 7 * Evaluation.FITNESS_MOVE;
+    table.put(5, 3, mateFitness, new Move("b7", "a8", Piece.KNIGHT),
+        TranspositionTable.TranspositionType.NODE_CUT);
+    TranspositionTable.TranspositionEntry entry = table.get(3);
+    assertEquals(entry.depth, 5);
+    assertEquals(entry.fitness, mateFitness);
+    assertEquals(entry.bestMove.toString(), "b7a8n");
+    assertEquals(entry.type, TranspositionTable.TranspositionType.NODE_CUT);
+  }
+
+  /** Ensures that entries in neighboring slots do not overwrite each other. */
+  @Test
+  public void testNeighboringEntries() {
+    TranspositionTable table = new TranspositionTable(16);
+    table.put(1, 4, 25, new Move("a1", "h8"), TranspositionTable.TranspositionType.NODE_PV);
+    table.put(2, 5, -25, new Move("h8", "a1"), TranspositionTable.TranspositionType.NODE_ALL);
+    assertEquals(table.get(4).fitness, 25);
+    assertEquals(table.get(4).bestMove.toString(), "a1h8");
+    assertEquals(table.get(5).fitness, -25);
+    assertEquals(table.get(5).bestMove.toString(), "h8a1");
+    assertNull(table.get(6));
+  }
+
+  /** Ensures the occupancy is reported in permille of the entries and cleared with the table. */
+  @Test
+  public void testHashfull() {
+    TranspositionTable table = new TranspositionTable(16);
+    assertEquals(table.hashfull(), 0);
+    for (int i = 0; i < 4; i++) {
+      table.put(1, i, 0, null, TranspositionTable.TranspositionType.NODE_ALL);
+    }
+    assertEquals(table.hashfull(), 250);
+    table.clear();
+    assertEquals(table.hashfull(), 0);
+  }
+}
@@ -0,0 +1,54 @@
+package tactician.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import tactician.Board;
+import tactician.Brain;
+import tactician.Evaluation;
+import tactician.UciInfoListener;
+
+/**
+ * This class tests the functionality of the {@link UciInfoListener} class.
+ * 
+ * @author Phil Leszczynski
+ */
+public class TestUciInfoListener {
+  /** Ensures scores are reported in centipawns, and mates in moves. */
+  @Test
+  public void testScore() {
+    assertEquals(UciInfoListener.score(35), "cp 35");
+    assertEquals(UciInfoListener.score(-120), "cp -120");
+    // The king is captured three plies from the root, after a mate in one.
+    assertEquals(UciInfoListener.score(Evaluation.FITNESS_LARGE - 3 * Evaluation.FITNESS_MOVE),
+        "mate 1");
+    assertEquals(UciInfoListener.score(Evaluation.FITNESS_LARGE - 5 * Evaluation.FITNESS_MOVE),
+        "mate 2");
+    // Our king is captured four plies from the root, after the opponent mates on their first move.
+    assertEquals(UciInfoListener.score(-Evaluation.FITNESS_LARGE + 4 * Evaluation.FITNESS_MOVE),
+        "mate -1");
+  }
+
+  /** Ensures a search reports one info line per iteration, ending in the mate it found. */
+  @Test
+  public void testSearch() {
+    Board board = new Board();
+    board.move("f2", "f3");
+    board.move("e7", "e5");
+    board.move("g2", "g4");
+    Brain brain = new Brain();
+    ArrayList<String> lines = new ArrayList<String>();
+    brain.setSearchListener(new UciInfoListener(lines::add));
+    brain.getMove(board, 3);
+    assertEquals(lines.size(), 3);
+    for (int i = 0; i < lines.size(); i++) {
+      assertTrue(lines.get(i).startsWith("info depth " + (i + 1) + " seldepth "));
+    }
+    assertTrue(lines.get(2).contains(" score mate 1 nodes "));
+    assertTrue(lines.get(2).contains(" pv d8h4"));
+  }
+}
@@ -0,0 +1,355 @@
+package tactician;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class tunes the parameters of the static evaluation (see {@link EvaluationParameters})
+ * against a set of positions labelled with the results of the games they were taken from, using
+ * the Texel tuning method. For a given set of
+ * weights we turn each position's static evaluation into an expected score with a logistic
+ * function, and measure the mean squared error against the actual results. A local search then
+ * nudges each weight up or down by one centipawn at a time, keeping any change that lowers the
+ * error, until no single change helps.
+ *
+ * <p>Each error computation evaluates every position, and the search computes the error hundreds
+ * of times. So the FEN strings are parsed only once, into an array of packed positions (see
+ * {@link Board#packPosition(long[], int)}) which also holds their position hashes, and each
+ * evaluation just unpacks a position into a board. The evaluations are spread over all cores with a
+ * parallel stream in a {@link ForkJoinPool}. Each worker thread has its own {@link Evaluation} and
+ * {@link Board} through a {@link ThreadLocal}, as neither is safe to share. Whenever the weights
+ * change a worker gives both of them the new parameters, which also clears the evaluation's hash
+ * table and rebuilds the board's piece-square tables, so material values and piece placement are
+ * tuned along with the other terms.
+ *
+ * <p>The positions are read from an EPD file, one position per line: the first four fields of a
+ * FEN string followed by the result, either as an operation such as {@code c9 "1-0";}, in
+ * brackets such as {@code [0.5]}, or as a bare {@code 1-0}, {@code 1/2-1/2} or {@code 0-1}. The
+ * results are from white's perspective. The positions should be quiet, since the static evaluation
+ * does not account for pending captures. The tuned weights are written as a parameters file, see
+ * {@link EvaluationParameters#load(String)}.
+ *
+ * @see <a href="http://chessprogramming.wikispaces.com/Texel%27s+Tuning+Method">Texel's Tuning
+ *      Method</a>
+ * @author Phil Leszczynski
+ */
+public class TexelTuner {
+  /**
+   * Initializes a tuner over the given labelled positions.
+   *
+   * @param fenstrings the positions in FEN notation
+   * @param results the result of the game for each position from white's perspective: 1 for a
+   *        white win, 0.5 for a draw, and 0 for a black win
+   * @param threads the number of worker threads to evaluate the positions with
+   */
+  public TexelTuner(List<String> fenstrings, double[] results, int threads) {
+    this(packPositions(fenstrings), results, threads);
+  }
+
+  /**
+   * Initializes a tuner over the given packed positions.
+   *
+   * @param positions the positions packed one after another, see
+   *        {@link Board#packPosition(long[], int)}
+   * @param results the result of the game for each position from white's perspective
+   * @param threads the number of worker threads to evaluate the positions with
+   */
+  private TexelTuner(long[] positions, double[] results, int threads) {
+    this.positions = positions;
+    this.results = results;
+    this.pool = new ForkJoinPool(threads);
+    this.weights = new EvaluationParameters().getValues();
+  }
+
+  /**
+   * Parses positions in FEN notation and packs them one after another into an array.
+   *
+   * @param fenstrings the positions in FEN notation
+   * @return the packed positions, see {@link Board#packPosition(long[], int)}
+   */
+  private static long[] packPositions(List<String> fenstrings) {
+    long[] positions = new long[fenstrings.size() * Board.PACKED_LENGTH];
+    Board board = new Board();
+    for (int i = 0; i < fenstrings.size(); i++) {
+      board.setPositionFenstring(fenstrings.get(i));
+      board.packPosition(positions, i * Board.PACKED_LENGTH);
+    }
+    return positions;
+  }
+
+  /**
+   * Reads labelled positions from an EPD file, streaming it line by line: each line is packed as
+   * soon as it is read, so only the packed positions are held in memory and never the text. Lines
+   * without a recognizable result are skipped.
+   *
+   * @param path the path of the EPD file
+   * @param threads the number of worker threads to evaluate the positions with
+   * @return a tuner over the positions in the file
+   * @throws IOException if the file cannot be read
+   */
+  public static TexelTuner fromEpd(String path, int threads) throws IOException {
+    long[] positions = new long[1024 * Board.PACKED_LENGTH];
+    double[] results = new double[1024];
+    int size = 0;
+    Board board = new Board();
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(path))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = parseEpdLine(line);
+        if (entry == null) {
+          continue;
+        }
+        if (size == results.length) {
+          positions = Arrays.copyOf(positions, 2 * positions.length);
+          results = Arrays.copyOf(results, 2 * results.length);
+        }
+        board.setPositionFenstring(entry[0]);
+        board.packPosition(positions, size * Board.PACKED_LENGTH);
+        results[size] = Double.parseDouble(entry[1]);
+        size++;
+      }
+    }
+    return new TexelTuner(Arrays.copyOf(positions, size * Board.PACKED_LENGTH),
+        Arrays.copyOf(results, size), threads);
+  }
+
+  /**
+   * Parses a line of an EPD file into a FEN string and a result. See the class definition for the
+   * accepted formats.
+   *
+   * @param line the line of the EPD file
+   * @return a pair of the FEN string and the result from white's perspective as a string, or null
+   *         if the line has no position or result
+   */
+  public static String[] parseEpdLine(String line) {
+    String[] fields = line.trim().split("\\s+");
+    if (fields.length < 5) {
+      return null;
+    }
+    // Look for the c9 operation or a bracketed result first, since other operations such as id
+    // can hold any text. Failing those the result is the last field.
+    String result = null;
+    for (int i = 4; i < fields.length && result == null; i++) {
+      if (fields[i].equals("c9") && i + 1 < fields.length) {
+        result = parseResult(fields[i + 1].replace(";", "").replace("\"", ""));
+      } else if (fields[i].startsWith("[") && fields[i].endsWith("]")) {
+        result = parseResult(fields[i].substring(1, fields[i].length() - 1));
+      }
+    }
+    if (result == null) {
+      result = parseResult(fields[fields.length - 1]);
+    }
+    if (result == null) {
+      return null;
+    }
+    String fenstring = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " 0 1";
+    return new String[] {fenstring, result};
+  }
+
+  /**
+   * Converts a game result to a score from white's perspective.
+   *
+   * @param token the result, as 1-0, 1/2-1/2 or 0-1, or as a number 1.0, 0.5 or 0.0
+   * @return the score "1", "0.5" or "0", or null if the token is not a result
+   */
+  private static String parseResult(String token) {
+    switch (token) {
+      case "1-0":
+      case "1.0":
+      case "1":
+        return "1";
+      case "1/2-1/2":
+      case "0.5":
+        return "0.5";
+      case "0-1":
+      case "0.0":
+      case "0":
+        return "0";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the expected score for white of a position with a given static evaluation.
+   *
+   * @param fitness the static evaluation in centipawns from white's perspective
+   * @param scale the scaling constant of the logistic function
+   * @return the expected score between 0 and 1
+   */
+  public static double expectedScore(int fitness, double scale) {
+    return 1 / (1 + Math.pow(10, -scale * fitness / 400));
+  }
+
+  /**
+   * Computes the mean squared error between the expected scores under the given weights and the
+   * actual results, evaluating the positions in parallel.
+   *
+   * @param weights the evaluation weights, see {@link EvaluationParameters#getValues()}
+   * @param scale the scaling constant of the logistic function
+   * @return the mean squared error
+   */
+  public double error(int[] weights, double scale) {
+    int[] snapshot = weights.clone();
+    try {
+      double sum = this.pool.submit(() -> IntStream.range(0, this.results.length).parallel()
+          .mapToDouble(i -> {
+            double difference =
+                this.results[i] - expectedScore(this.evaluateWhite(i, snapshot), scale);
+            return difference * difference;
+          }).sum()).get();
+      return sum / this.results.length;
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the static evaluation of a position from white's perspective under the given weights,
+   * using the calling thread's own evaluation and board.
+   *
+   * @param index the index of the position
+   * @param weights the evaluation weights
+   * @return the static evaluation in centipawns from white's perspective
+   */
+  private int evaluateWhite(int index, int[] weights) {
+    Worker worker = this.workers.get();
+    if (worker.weights != weights) {
+      EvaluationParameters parameters = new EvaluationParameters();
+      parameters.setValues(weights);
+      worker.evaluation.setParameters(parameters);
+      worker.board.setPieceSquareTable(new PieceSquareTable(parameters));
+      worker.weights = weights;
+    }
+    worker.board.setPositionPacked(this.positions, index * Board.PACKED_LENGTH);
+    int fitness = worker.evaluation.fitness(worker.board);
+    return worker.board.turn == Color.WHITE ? fitness : -fitness;
+  }
+
+  /**
+   * Finds the scaling constant of the logistic function that best fits the current weights, by a
+   * ternary search. It is fixed before tuning the weights so that the error is in terms of the
+   * evaluation's own scale.
+   *
+   * @return the best scaling constant
+   */
+  public double fitScale() {
+    double low = 0.1;
+    double high = 3.0;
+    for (int i = 0; i < 30; i++) {
+      double third = (high - low) / 3;
+      if (this.error(this.weights, low + third) < this.error(this.weights, high - third)) {
+        high = high - third;
+      } else {
+        low = low + third;
+      }
+    }
+    return (low + high) / 2;
+  }
+
+  /**
+   * Tunes the weights by local search: each weight in turn is moved one centipawn up, or else one
+   * centipawn down, and the change is kept if it lowers the error. This repeats until a full pass
+   * makes no change or the maximum number of passes is reached.
+   *
+   * @param scale the scaling constant of the logistic function, see {@link #fitScale()}
+   * @param maxPasses the maximum number of passes over all of the weights
+   * @param progress where to send a line such as "Pass 3: error 0.0712" after each pass
+   * @return the tuned weights
+   */
+  public int[] tune(double scale, int maxPasses, Consumer<String> progress) {
+    double bestError = this.error(this.weights, scale);
+    for (int pass = 0; pass < maxPasses; pass++) {
+      boolean improved = false;
+      for (int i = 0; i < this.weights.length; i++) {
+        for (int step : new int[] {1, -1}) {
+          int[] candidate = this.weights.clone();
+          candidate[i] += step;
+          double error = this.error(candidate, scale);
+          if (error < bestError) {
+            bestError = error;
+            this.weights = candidate;
+            improved = true;
+            break;
+          }
+        }
+      }
+      progress.accept("Pass " + (pass + 1) + ": error " + bestError);
+      if (!improved) {
+        break;
+      }
+    }
+    return this.weights.clone();
+  }
+
+  /**
+   * Writes weights to a parameters file, see {@link EvaluationParameters#load(String)}.
+   *
+   * @param weights the weights to write, see {@link EvaluationParameters#getValues()}
+   * @param path the path of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeWeights(int[] weights, String path) throws IOException {
+    EvaluationParameters parameters = new EvaluationParameters();
+    parameters.setValues(weights);
+    parameters.save(path);
+  }
+
+  /**
+   * Returns the number of positions being tuned against.
+   *
+   * @return the number of positions
+   */
+  public int size() {
+    return this.results.length;
+  }
+
+  /**
+   * Tunes the evaluation weights from the command line.
+   *
+   * @param args the EPD file to read, the weights file to write, and optionally the maximum
+   *        number of passes (default 100) and the number of threads (default all processors)
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: TexelTuner <positions.epd> <weights.txt> [passes] [threads]");
+      System.exit(1);
+    }
+    int maxPasses = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    int threads = args.length > 3 ? Integer.parseInt(args[3])
+        : Runtime.getRuntime().availableProcessors();
+    TexelTuner tuner = TexelTuner.fromEpd(args[0], threads);
+    System.out.println("Loaded " + tuner.size() + " positions");
+    double scale = tuner.fitScale();
+    System.out.println("Scale: " + scale);
+    int[] weights = tuner.tune(scale, maxPasses, System.out::println);
+    TexelTuner.writeWeights(weights, args[1]);
+    tuner.pool.shutdown();
+  }
+
+  /** The evaluation and board that a worker thread evaluates positions with. */
+  private static class Worker {
+    private Evaluation evaluation = new Evaluation();
+    private Board board = new Board();
+
+    /** The weights last given to {@link #evaluation} and {@link #board}, compared by reference. */
+    private int[] weights = null;
+  }
+
+  /** The positions packed one after another, see {@link Board#packPosition(long[], int)}. */
+  private long[] positions;
+
+  private double[] results;
+  private ForkJoinPool pool;
+  private int[] weights;
+  private ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+}
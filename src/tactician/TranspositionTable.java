@@ -11,7 +11,7 @@ package tactician;
  * entries as a pair of 64-bit long values in {@link #data} rather than storing
  * {@link TranspositionEntry} objects directly. The first 64-bit long contains the position hash.
  * The second 64-bit long uses its high 32 bits to store the fitness or node score in centipawns as
- * a float. The next highest 8 bits store the best move's source square, as it ranges from 0-63.
+ * an int. The next highest 8 bits store the best move's source square, as it ranges from 0-63.
  * The next highest 8 bits store the best move's destination square, also 0-63. The next highest 4
  * bits store the promotion piece (1 if bishop, rook, knight, queen respectively); the next highest
  * 4 bits store the node type (1 for not used, All, Cut, PV respectively). Finally the lowest 8
@@ -22,7 +22,7 @@ package tactician;
 public class TranspositionTable {
   /**
    * This enum lists the three node types that can be classified through an alpha-beta search. See
-   * {@link Brain#alphabeta(Board, int, float, float)} for more details about our use of alpha-beta
+   * {@link Brain#alphabeta(Board, int, int, int, int)} for more details about our use of alpha-beta
    * pruning. PV, or principal variation, nodes are the ones where all moves had a score between
    * alpha and beta. They are also used to determine the sequence of best moves for each player.
    * Cut nodes are the ones where a child move scored higher than beta, or the child move is so
@@ -55,7 +55,7 @@ public class TranspositionTable {
      * @param bestMove the best move for the player at the node
      * @param type the type of node: PV, Cut, or All
      */
-    public TranspositionEntry(int depth, long positionHash, float fitness, Move bestMove,
+    public TranspositionEntry(int depth, long positionHash, int fitness, Move bestMove,
         TranspositionType type) {
       this.depth = depth;
       this.positionHash = positionHash;
@@ -83,7 +83,7 @@ public class TranspositionTable {
     public long positionHash;
 
     /** The score of the node from the moving player's perspective in centipawns. */
-    public float fitness;
+    public int fitness;
 
     /** The type of node: PV, Cut, or All. */
     public TranspositionType type;
@@ -104,6 +104,35 @@ public class TranspositionTable {
     this.data = new long[2 * this.size];
   }
 
+  /**
+   * Removes all records from the transposition table, so that a search does not depend on the
+   * searches before it.
+   */
+  public void clear() {
+    for (int i = 0; i < this.data.length; i++) {
+      this.data[i] = 0;
+    }
+  }
+
+  /**
+   * Estimates how full the table is from the occupancy of its first thousand entries, which is
+   * much cheaper than counting them all and accurate enough since positions are spread evenly
+   * across the table. This is the figure reported as {@code hashfull} in UCI info lines.
+   * 
+   * @return the fraction of entries in use, in permille
+   */
+  public int hashfull() {
+    int sample = Math.min(this.size, 1000);
+    int used = 0;
+    for (int i = 0; i < sample; i++) {
+      // Every stored entry has one of the node type bits set, so only empty entries are zero.
+      if (this.data[2 * i + 1] != 0) {
+        used++;
+      }
+    }
+    return sample == 0 ? 0 : used * 1000 / sample;
+  }
+
   /**
    * Inserts a record into the transposition hash table. See the class definition for how the
    * packing is done from transposition entries to pairs of 64-bit longs.
@@ -115,10 +144,10 @@ public class TranspositionTable {
    * @param bestMove the best move for the player at the node
    * @param type the type of node: PV, Cut, or All
    */
-  public void put(int depth, long positionHash, float fitness, Move bestMove,
+  public void put(int depth, long positionHash, int fitness, Move bestMove,
       TranspositionType type) {
     long contents = 0;
-    contents |= ((long) Float.floatToIntBits(fitness)) << 32;
+    contents |= ((long) fitness) << 32;
     if (bestMove != null) {
       contents |= (long) (bestMove.source << 24);
       contents |= (long) (bestMove.destination << 16);
@@ -161,9 +190,9 @@ public class TranspositionTable {
       return null;
     }
     long contents = this.data[index + 1];
-    float fitness = Float.intBitsToFloat((int) (contents >>> 32));
+    int fitness = (int) (contents >>> 32);
     Move bestMove = null;
-    if ((contents & 0x0000000011111000) != 0) {
+    if ((contents & 0x00000000ffff0000L) != 0) {
       bestMove = new Move((int) (byte) (contents >>> 24), (int) (byte) (contents >>> 16));
       if ((contents & 0x0000000000001000L) != 0) {
         bestMove.promoteTo = Piece.QUEEN;
@@ -194,9 +223,9 @@ public class TranspositionTable {
    * @return the array index where the position hash is found
    */
   private int index(long positionHash) {
-    // Unset the integer sign bit; the modulus is 2 * this.size - 1 because we're storing the
-    // transposition entry in two longs. The -1 is because it's the index of the first datapoint.
-    return ((int) positionHash & 0x7fffffff) % (2 * this.size - 1);
+    // Unset the integer sign bit. Each transposition entry takes up two longs, so the index of its
+    // first long must be even or neighboring entries would overlap.
+    return 2 * (((int) positionHash & 0x7fffffff) % this.size);
   }
 
   /** The size of the transposition table in number of entries (NOT bytes). */
@@ -0,0 +1,68 @@
+package tactician;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Period;
+
+/**
+ * This class is a periodic Java Flight Recorder sample of the transposition table of a
+ * {@link Brain}: how full it is, and how often the current or last search found the position it
+ * was looking for. Together with {@link SearchIterationEvent} it shows whether a slow search went
+ * with a table that had filled up or stopped hitting. The sample is only taken while a recording
+ * that enables the event is running; see {@link #register(Brain)}.
+ *
+ * @author Phil Leszczynski
+ */
+@Name("tactician.TranspositionTable")
+@Label("Transposition Table")
+@Category({"Tactician", "Search"})
+@Description("A sample of the transposition table occupancy and hit rate")
+@Period("1 s")
+public class TranspositionTableEvent extends Event {
+  /**
+   * Takes a sample of the brain's transposition table at the period set in the recording, one
+   * second by default. This is meant for the brain of a long-lived engine, since the brain cannot
+   * be garbage collected once registered.
+   *
+   * @param brain the brain to sample
+   */
+  public static void register(Brain brain) {
+    FlightRecorder.addPeriodicEvent(TranspositionTableEvent.class, () -> {
+      TranspositionTableEvent event = new TranspositionTableEvent();
+      // The counters are read while the search may be updating them, which is fine for a sample.
+      SearchStatistics statistics = brain.getStatistics();
+      event.hashfull = brain.getTranspositionTable().hashfull();
+      event.probes = statistics.transpositionProbes;
+      event.hits = statistics.transpositionHits;
+      event.stores = statistics.transpositionStores;
+      event.hitRate = statistics.transpositionHitRate();
+      event.commit();
+    });
+  }
+
+  /** How full the table is in permille, see {@link TranspositionTable#hashfull()}. */
+  @Label("Hashfull")
+  public int hashfull;
+
+  /** The number of probes by the current or last search. */
+  @Label("Probes")
+  public long probes;
+
+  /** The number of probes that found an entry. */
+  @Label("Hits")
+  public long hits;
+
+  /** The number of entries stored by the current or last search. */
+  @Label("Stores")
+  public long stores;
+
+  /** The fraction of probes that found an entry. */
+  @Label("Hit Rate")
+  @Percentage
+  public double hitRate;
+}
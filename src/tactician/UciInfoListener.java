@@ -0,0 +1,70 @@
+package tactician;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class reports the progress of a search as {@code info} lines of the Universal Chess
+ * Interface, for example "info depth 6 seldepth 14 score cp 35 nodes 193513 nps 412000 time 469
+ * hashfull 12 pv e2e4 e7e5 g1f3". GUIs show these lines to the user, and they also let us follow
+ * the speed of the engine while it plays.
+ *
+ * @see <a href="http://wbec-ridderkerk.nl/html/UCIProtocol.html">UCI Protocol</a>
+ * @author Phil Leszczynski
+ */
+public class UciInfoListener implements SearchListener {
+  /**
+   * Initializes a listener that sends its lines to the given output.
+   *
+   * @param output where to send each info line, typically {@link Tactician#respond(String)}
+   */
+  public UciInfoListener(Consumer<String> output) {
+    this.output = output;
+  }
+
+  @Override
+  public void iterationComplete(int depth, int selectiveDepth, int fitness, long nodes,
+      long millis, int hashfull, List<Move> principalVariation) {
+    StringBuilder line = new StringBuilder();
+    line.append("info depth ").append(depth);
+    line.append(" seldepth ").append(selectiveDepth);
+    line.append(" score ").append(score(fitness));
+    line.append(" nodes ").append(nodes);
+    line.append(" nps ").append(nodes * 1000 / Math.max(millis, 1));
+    line.append(" time ").append(millis);
+    line.append(" hashfull ").append(hashfull);
+    line.append(" pv");
+    for (Move move : principalVariation) {
+      line.append(' ').append(move);
+    }
+    this.output.accept(line.toString());
+  }
+
+  @Override
+  public void currentMove(int depth, Move move, int moveNumber) {
+    this.output.accept("info depth " + depth + " currmove " + move + " currmovenumber "
+        + moveNumber);
+  }
+
+  /**
+   * Formats a score for an info line: "cp" followed by the score in centipawns, or "mate"
+   * followed by the number of moves until mate, negative if the engine is getting mated. Since
+   * mate is detected by capturing the king, when the king is captured by the n-th move from the
+   * root the mating move was the (n - 2)-th.
+   *
+   * @param fitness the score from the perspective of the player to move at the root
+   * @return the score in UCI notation
+   */
+  public static String score(int fitness) {
+    if (fitness >= Evaluation.FITNESS_MATE_BOUND) {
+      int plies = (Evaluation.FITNESS_LARGE - fitness) / Evaluation.FITNESS_MOVE;
+      return "mate " + (plies - 1) / 2;
+    } else if (fitness <= -Evaluation.FITNESS_MATE_BOUND) {
+      int plies = (Evaluation.FITNESS_LARGE + fitness) / Evaluation.FITNESS_MOVE;
+      return "mate " + -((plies - 2) / 2);
+    }
+    return "cp " + fitness;
+  }
+
+  private Consumer<String> output;
+}